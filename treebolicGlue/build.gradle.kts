@@ -30,6 +30,10 @@ android {
     kotlinOptions {
         
     }
+
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
 }
 
 kotlin {
@@ -45,4 +49,8 @@ dependencies {
 
     implementation(libs.core.ktx)
     coreLibraryDesugaring(libs.desugar)
+
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.robolectric:robolectric:4.13")
+    testImplementation("org.mockito:mockito-core:5.12.0")
 }
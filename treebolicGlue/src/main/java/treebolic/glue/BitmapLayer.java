@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Bitmap-backed layer: content is rasterized once and blitted until invalidated
+ * Rendering happens on the render thread, invalidation may come from any thread.
+ *
+ * @author Bernard Bou
+ */
+public class BitmapLayer
+{
+	/**
+	 * Backing bitmap, reused across size changes when its allocation is large enough
+	 */
+	@Nullable
+	private Bitmap bitmap;
+
+	/**
+	 * Canvas on backing bitmap
+	 */
+	@NonNull
+	private final Canvas canvas = new Canvas();
+
+	/**
+	 * Canvas with no backing bitmap, swallows drawing while layer is valid
+	 */
+	@NonNull
+	private final Canvas discardCanvas = new Canvas();
+
+	/**
+	 * Content generation, incremented by each invalidation
+	 */
+	@NonNull
+	private final AtomicInteger generation = new AtomicInteger(0);
+
+	/**
+	 * Generation of rendered content
+	 */
+	private volatile int renderedGeneration = -1;
+
+	/**
+	 * Generation being rendered
+	 */
+	private int renderingGeneration;
+
+	/**
+	 * Save count of canvas before rendering
+	 */
+	private int saveCount;
+
+	/**
+	 * Invalidate content
+	 */
+	public void invalidate()
+	{
+		this.generation.incrementAndGet();
+	}
+
+	/**
+	 * Whether content is valid
+	 *
+	 * @return true if content can be blitted as is
+	 */
+	public boolean isValid()
+	{
+		return this.bitmap != null && this.renderedGeneration == this.generation.get();
+	}
+
+	/**
+	 * Ensure backing bitmap has size. Content is invalidated if size changes.
+	 *
+	 * @param width  width
+	 * @param height height
+	 * @return false if size is empty
+	 */
+	public boolean ensure(final int width, final int height)
+	{
+		if (width <= 0 || height <= 0)
+		{
+			return false;
+		}
+		if (this.bitmap != null && this.bitmap.getWidth() == width && this.bitmap.getHeight() == height)
+		{
+			return true;
+		}
+		if (this.bitmap != null && this.bitmap.getAllocationByteCount() >= 4L * width * height)
+		{
+			// reuse allocation
+			this.bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+		}
+		else
+		{
+			if (this.bitmap != null)
+			{
+				this.bitmap.recycle();
+			}
+			this.bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		}
+		this.canvas.setBitmap(this.bitmap);
+		invalidate();
+		return true;
+	}
+
+	/**
+	 * Begin rendering content
+	 *
+	 * @return canvas to render content to, cleared, its state is restored by endRender()
+	 */
+	@NonNull
+	public Canvas beginRender()
+	{
+		assert this.bitmap != null;
+		this.renderingGeneration = this.generation.get();
+		this.bitmap.eraseColor(Color.TRANSPARENT);
+		// canvas outlives renders: transforms and clips left by one must not carry into the next
+		this.saveCount = this.canvas.save();
+		return this.canvas;
+	}
+
+	/**
+	 * End rendering content, content is valid unless invalidated in the meantime
+	 */
+	public void endRender()
+	{
+		this.canvas.restoreToCount(this.saveCount);
+		this.renderedGeneration = this.renderingGeneration;
+	}
+
+	/**
+	 * Get canvas that discards drawing, for when content is valid
+	 *
+	 * @return discarding canvas
+	 */
+	@NonNull
+	public Canvas getDiscardCanvas()
+	{
+		return this.discardCanvas;
+	}
+
+	/**
+	 * Blit content
+	 *
+	 * @param target target canvas
+	 */
+	public void draw(@NonNull final Canvas target)
+	{
+		draw(target, null);
+	}
+
+	/**
+	 * Blit content with paint
+	 *
+	 * @param target target canvas
+	 * @param paint  paint, null if none
+	 */
+	public void draw(@NonNull final Canvas target, @Nullable final Paint paint)
+	{
+		if (this.bitmap != null)
+		{
+			target.drawBitmap(this.bitmap, 0, 0, paint);
+		}
+	}
+
+	/**
+	 * Release backing bitmap
+	 */
+	public void release()
+	{
+		if (this.bitmap != null)
+		{
+			this.canvas.setBitmap(null);
+			this.bitmap.recycle();
+			this.bitmap = null;
+		}
+		invalidate();
+	}
+}
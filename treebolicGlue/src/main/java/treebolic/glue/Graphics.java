@@ -6,8 +6,8 @@ package treebolic.glue;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.DashPathEffect;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Cap;
@@ -18,9 +18,12 @@ import android.graphics.PathEffect;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.os.Build;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 
+import java.util.Arrays;
+
 import org.treebolic.glue.R;
 
 import androidx.annotation.NonNull;
@@ -55,9 +58,39 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	static public float fontFactor = 1F;
 
 	/**
-	 * Canvas
+	 * Default text size (pixels) below which labels are subject to level of detail
+	 */
+	static public final float DEFAULT_LOD_TEXT_THRESHOLD = 6F;
+
+	/**
+	 * Default image size (pixels) below which images are subject to level of detail
+	 */
+	static public final int DEFAULT_LOD_IMAGE_THRESHOLD = 16;
+
+	/**
+	 * Display density, scales dot and dash intervals
+	 */
+	static public float density = 1F;
+
+	/**
+	 * Canvas (rebound by bind())
+	 */
+	public Canvas canvas;
+
+	/**
+	 * Whether canvas is hardware-accelerated
 	 */
-	final public Canvas canvas;
+	private boolean hardware;
+
+	/**
+	 * Whether canvas has no backing bitmap and discards drawing (valid cached layer)
+	 */
+	private boolean discarding;
+
+	/**
+	 * Whether canvas output is recorded to a picture that another thread replays later
+	 */
+	private boolean recorded;
 
 	/**
 	 * Paint
@@ -66,20 +99,167 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	private final Paint paint;
 
 	/**
-	 * Saved stroke
+	 * Scratch path, reused by polylines and polygons
+	 */
+	@NonNull
+	private final Path path = new Path();
+
+	/**
+	 * Scratch float rectangle, reused by arcs, rectangles and ovals
+	 */
+	@NonNull
+	private final RectF rectF = new RectF();
+
+	/**
+	 * Scratch int rectangle, reused by scaled images
+	 */
+	@NonNull
+	private final Rect rect = new Rect();
+
+	/**
+	 * Line batch, as x1 y1 x2 y2 quadruplets, flushed with a single drawLines call
+	 */
+	@NonNull
+	private float[] lines = new float[4 * 256];
+
+	/**
+	 * Number of floats in line batch
+	 */
+	private int linesLength;
+
+	/**
+	 * Whether line segments are batched
+	 */
+	private boolean lineBatching = true;
+
+	// paint state shadow, the paint is only mutated when a value differs
+
+	/**
+	 * Style currently applied to paint
+	 */
+	@Nullable
+	private Style style;
+
+	/**
+	 * Color currently applied to paint
+	 */
+	private int color;
+
+	/**
+	 * Stroke width currently applied to paint
+	 */
+	private float paintStrokeWidth;
+
+	/**
+	 * Path effect currently applied to paint
 	 */
-	private float strokeWidth;
-	private PathEffect strokeEffect;
+	@Nullable
+	private PathEffect pathEffect;
 
 	/**
-	 * Dot effect
+	 * Text size currently applied to paint
 	 */
-	static private final PathEffect dotEffect = new DashPathEffect(new float[]{5, 3}, 0); // on-interval off-interval
+	private float textSize;
 
 	/**
-	 * Dash effect
+	 * Text alignment currently applied to paint
 	 */
-	static private final PathEffect dashEffect = new DashPathEffect(new float[]{2, 2}, 0); // on-interval off-interval
+	@Nullable
+	private Align textAlign;
+
+	/**
+	 * Whether primitives outside the clip are culled (primitives are always skipped on a discarding canvas)
+	 */
+	private boolean culling = false;
+
+	/**
+	 * Number of primitives culled since reset
+	 */
+	private int culled;
+
+	/**
+	 * Number of primitives tested and drawn since reset
+	 */
+	private int drawn;
+
+	/**
+	 * Level of detail for small labels and images
+	 */
+	@NonNull
+	private LevelOfDetail levelOfDetail = LevelOfDetail.FULL;
+
+	/**
+	 * Text size (pixels) below which labels are subject to level of detail
+	 */
+	private float lodTextThreshold = DEFAULT_LOD_TEXT_THRESHOLD;
+
+	/**
+	 * Image size (pixels) below which images are subject to level of detail
+	 */
+	private int lodImageThreshold = DEFAULT_LOD_IMAGE_THRESHOLD;
+
+	/**
+	 * Typeface currently applied to paint
+	 */
+	@Nullable
+	private Typeface typeface;
+
+	/**
+	 * Number of paint mutations performed
+	 */
+	private long paintMutations;
+
+	/**
+	 * Number of paint mutations avoided because value was unchanged
+	 */
+	private long paintMutationsAvoided;
+
+	/**
+	 * Text width cache, shared with companion graphics
+	 */
+	@NonNull
+	private TextWidthCache textWidthCache = new TextWidthCache();
+
+	/**
+	 * Label cache, null if labels are drawn as text
+	 */
+	@Nullable
+	private LabelCache labelCache;
+
+	/**
+	 * Companion graphics for off-screen recording, reused across frames
+	 */
+	@Nullable
+	private Graphics offscreen;
+
+	/**
+	 * Last background color drawn, null if none
+	 */
+	@Nullable
+	private Integer backgroundColor;
+
+	/**
+	 * Initial depth of saved stroke stack
+	 */
+	static private final int STROKE_STACK_DEPTH = 16;
+
+	/**
+	 * Saved stroke stack (parallel arrays: stroke width, path effect, color, text size)
+	 */
+	@NonNull
+	private float[] stackStrokeWidths = new float[STROKE_STACK_DEPTH];
+	@NonNull
+	private PathEffect[] stackStrokeEffects = new PathEffect[STROKE_STACK_DEPTH];
+	@NonNull
+	private int[] stackColors = new int[STROKE_STACK_DEPTH];
+	@NonNull
+	private float[] stackTextSizes = new float[STROKE_STACK_DEPTH];
+
+	/**
+	 * Saved stroke stack depth
+	 */
+	private int stackDepth;
+
 
 	// S T A T I C    I N I T
 
@@ -97,6 +277,9 @@ public class Graphics implements treebolic.glue.iface.Graphics
 			final Resources resources = context.getApplicationContext().getResources();
 			final DisplayMetrics metrics = resources.getDisplayMetrics();
 
+			// density for stroke effects
+			Graphics.density = metrics.density;
+
 			// font factor for resolution
 			Graphics.PT2PX = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PT, 1F, metrics);
 			//TODO emulator bug workaround
@@ -124,9 +307,32 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	public Graphics(final Canvas canvas0)
 	{
 		super();
+		this.paint = new Paint();
+		bind(canvas0);
+		reset();
+	}
+
+	/**
+	 * Bind to canvas, so that this graphics context (and its paint) outlives frames
+	 *
+	 * @param canvas0 canvas
+	 * @return this graphics context
+	 */
+	@NonNull
+	public Graphics bind(final Canvas canvas0)
+	{
 		this.canvas = canvas0;
+		this.hardware = canvas0 != null && canvas0.isHardwareAccelerated();
+		this.discarding = canvas0 != null && canvas0.getWidth() == 0 && canvas0.getHeight() == 0;
+		return this;
+	}
 
-		this.paint = new Paint();
+	/**
+	 * Reset paint and saved stroke to defaults
+	 */
+	public void reset()
+	{
+		this.paint.reset();
 		this.paint.setAntiAlias(true);
 		this.paint.setHinting(Paint.HINTING_ON); // font
 
@@ -135,6 +341,87 @@ public class Graphics implements treebolic.glue.iface.Graphics
 		this.paint.setStrokeJoin(Join.BEVEL);
 		this.paint.setStrokeMiter(1);
 		this.paint.setColor(android.graphics.Color.WHITE);
+
+		this.style = this.paint.getStyle();
+		this.color = android.graphics.Color.WHITE;
+		this.paintStrokeWidth = strokeWidthFactor;
+		this.pathEffect = null;
+		this.textSize = this.paint.getTextSize();
+		this.textAlign = this.paint.getTextAlign();
+		this.typeface = null;
+
+		this.stackDepth = 0;
+		this.culled = 0;
+		this.drawn = 0;
+		if (this.offscreen != null)
+		{
+			this.offscreen.culled = 0;
+			this.offscreen.drawn = 0;
+		}
+		this.linesLength = 0;
+	}
+
+	/**
+	 * Get companion graphics context for off-screen canvas, bound to canvas and reset. It is created once and reused.
+	 * Its counters accumulate over the canvases it is bound to until this graphics context is reset.
+	 *
+	 * @param canvas0 off-screen canvas
+	 * @return companion graphics context
+	 */
+	@NonNull
+	public Graphics getOffscreen(final Canvas canvas0)
+	{
+		if (this.offscreen == null)
+		{
+			this.offscreen = new Graphics(canvas0);
+			this.offscreen.textWidthCache = this.textWidthCache;
+		}
+		else
+		{
+			// counters span layers
+			final int culled0 = this.offscreen.culled;
+			final int drawn0 = this.offscreen.drawn;
+			this.offscreen.bind(canvas0).reset();
+			this.offscreen.culled = culled0;
+			this.offscreen.drawn = drawn0;
+		}
+		this.offscreen.labelCache = this.labelCache;
+		this.offscreen.culling = this.culling;
+		this.offscreen.levelOfDetail = this.levelOfDetail;
+		this.offscreen.lodTextThreshold = this.lodTextThreshold;
+		this.offscreen.lodImageThreshold = this.lodImageThreshold;
+		return this.offscreen;
+	}
+
+	/**
+	 * Set whether canvas output is recorded to a picture that another thread replays later.
+	 * Such output must not reference bitmaps that are drawn to again while the picture may be replayed.
+	 *
+	 * @param flag whether output is recorded for replay by another thread
+	 */
+	public void setRecorded(final boolean flag)
+	{
+		this.recorded = flag;
+	}
+
+	/**
+	 * Whether canvas output is recorded to a picture that another thread replays later
+	 *
+	 * @return true if output is recorded for replay by another thread
+	 */
+	public boolean isRecorded()
+	{
+		return this.recorded;
+	}
+
+	/**
+	 * Whether canvas is hardware-accelerated
+	 *
+	 * @return true if canvas is hardware-accelerated
+	 */
+	public boolean isHardwareAccelerated()
+	{
+		return this.hardware;
 	}
 
 	// B A C K G R O U N D
@@ -142,10 +429,23 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawBackgroundColor(@Nullable final Integer color, final int left, final int top, final int width, final int height)
 	{
-		if (color != null)
+		flush();
+		if (color != null && !this.discarding)
 		{
 			this.canvas.drawColor(Color.makeOpaque(color));
 		}
+		this.backgroundColor = color;
+	}
+
+	/**
+	 * Get last background color drawn (including companion graphics)
+	 *
+	 * @return background color, null if none
+	 */
+	@Nullable
+	public Integer getBackgroundColor()
+	{
+		return this.backgroundColor != null || this.offscreen == null ? this.backgroundColor : this.offscreen.backgroundColor;
 	}
 
 	// D R A W
@@ -154,7 +454,16 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawLine(final int x1, final int y1, final int x2, final int y2)
 	{
-		this.paint.setStyle(Style.STROKE);
+		if (culls(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2)))
+		{
+			return;
+		}
+		if (this.lineBatching)
+		{
+			batchLine(x1, y1, x2, y2);
+			return;
+		}
+		applyStyle(Style.STROKE);
 		this.canvas.drawLine(x1, y1, x2, y2, this.paint);
 	}
 
@@ -162,8 +471,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawArc(final float x, final float y, final float w, final float h, final float start, final float extent)
 	{
-		@NonNull final RectF oval = Rectangle2D.makeRect(x, y, w, h);
-		this.paint.setStyle(Style.STROKE);
+		if (culls(Math.min(x, x + w), Math.min(y, y + h), Math.max(x, x + w), Math.max(y, y + h)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF oval = Rectangle2D.makeRect(this.rectF, x, y, w, h);
+		applyStyle(Style.STROKE);
 		this.canvas.drawArc(oval, -start, -extent, false, this.paint); // android: angles start at 3:00 and rotate clockwise
 	}
 
@@ -171,15 +485,21 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawPolyline(@NonNull final int[] x, @NonNull final int[] y, final int length)
 	{
-		@NonNull final Path path = new Path();
-		path.reset(); // only needed when reusing this path for a new build
+		if (cullsPoints(x, y, length))
+		{
+			return;
+		}
+		// drawn as a path, not batched as segments: strokes are at least 2 pixels wide, so segment joins would show
+		flush();
+		@NonNull final Path path = this.path;
+		path.rewind(); // keeps internal storage for reuse
 		int i = 0;
 		path.moveTo(x[i], y[i]); // used for first point
 		for (++i; i < length; i++)
 		{
 			path.lineTo(x[i], y[i]);
 		}
-		this.paint.setStyle(Style.STROKE);
+		applyStyle(Style.STROKE);
 		this.canvas.drawPath(path, this.paint);
 	}
 
@@ -187,15 +507,20 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawPolygon(@NonNull final int[] x, @NonNull final int[] y, final int length)
 	{
-		@NonNull final Path path = new Path();
-		path.reset(); // only needed when reusing this path for a new build
+		if (cullsPoints(x, y, length))
+		{
+			return;
+		}
+		flush();
+		@NonNull final Path path = this.path;
+		path.rewind(); // keeps internal storage for reuse
 		path.moveTo(x[0], y[0]); // used for first point
 		for (int i = 1; i < length; i++)
 		{
 			path.lineTo(x[i], y[i]);
 		}
 		path.lineTo(x[0], y[0]);
-		this.paint.setStyle(Style.STROKE);
+		applyStyle(Style.STROKE);
 		this.canvas.drawPath(path, this.paint);
 	}
 
@@ -203,15 +528,20 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void fillPolygon(@NonNull final int[] x, @NonNull final int[] y, final int length)
 	{
-		@NonNull final Path path = new Path();
-		path.reset(); // only needed when reusing this path for a new build
+		if (cullsPoints(x, y, length))
+		{
+			return;
+		}
+		flush();
+		@NonNull final Path path = this.path;
+		path.rewind(); // keeps internal storage for reuse
 		path.moveTo(x[0], y[0]); // used for first point
 		for (int i = 1; i < length; i++)
 		{
 			path.lineTo(x[i], y[i]);
 		}
 		path.lineTo(x[0], y[0]);
-		this.paint.setStyle(Style.FILL_AND_STROKE);
+		applyStyle(Style.FILL_AND_STROKE);
 		this.canvas.drawPath(path, this.paint);
 	}
 
@@ -219,8 +549,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void fillRectangle(final int left, final int top, final int width, final int height)
 	{
-		@NonNull final RectF rect = Rectangle2D.makeRect(left, top, width, height);
-		this.paint.setStyle(Style.FILL_AND_STROKE);
+		if (culls(Math.min(left, left + width), Math.min(top, top + height), Math.max(left, left + width), Math.max(top, top + height)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF rect = Rectangle2D.makeRect(this.rectF, left, top, width, height);
+		applyStyle(Style.FILL_AND_STROKE);
 		this.canvas.drawRect(rect, this.paint);
 	}
 
@@ -228,8 +563,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawRoundRectangle(final int left, final int top, final int width, final int height, final int rx, final int ry)
 	{
-		@NonNull final RectF rect = Rectangle2D.makeRect(left, top, width, height);
-		this.paint.setStyle(Style.STROKE);
+		if (culls(Math.min(left, left + width), Math.min(top, top + height), Math.max(left, left + width), Math.max(top, top + height)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF rect = Rectangle2D.makeRect(this.rectF, left, top, width, height);
+		applyStyle(Style.STROKE);
 		this.canvas.drawRoundRect(rect, rx, ry, this.paint);
 	}
 
@@ -237,8 +577,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void fillRoundRectangle(final int left, final int top, final int width, final int height, final int rx, final int ry)
 	{
-		@NonNull final RectF rect = Rectangle2D.makeRect(left, top, width, height);
-		this.paint.setStyle(Style.FILL_AND_STROKE);
+		if (culls(Math.min(left, left + width), Math.min(top, top + height), Math.max(left, left + width), Math.max(top, top + height)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF rect = Rectangle2D.makeRect(this.rectF, left, top, width, height);
+		applyStyle(Style.FILL_AND_STROKE);
 		this.canvas.drawRoundRect(rect, rx, ry, this.paint);
 	}
 
@@ -246,8 +591,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawOval(final float left, final float top, final float width, final float height)
 	{
-		@NonNull final RectF rect = Rectangle2D.makeRect(left, top, width, height);
-		this.paint.setStyle(Style.STROKE);
+		if (culls(Math.min(left, left + width), Math.min(top, top + height), Math.max(left, left + width), Math.max(top, top + height)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF rect = Rectangle2D.makeRect(this.rectF, left, top, width, height);
+		applyStyle(Style.STROKE);
 		this.canvas.drawOval(rect, this.paint);
 	}
 
@@ -255,8 +605,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void fillOval(final float left, final float top, final float width, final float height)
 	{
-		@NonNull final RectF rect = Rectangle2D.makeRect(left, top, width, height);
-		this.paint.setStyle(Style.FILL_AND_STROKE);
+		if (culls(Math.min(left, left + width), Math.min(top, top + height), Math.max(left, left + width), Math.max(top, top + height)))
+		{
+			return;
+		}
+		flush();
+		@NonNull final RectF rect = Rectangle2D.makeRect(this.rectF, left, top, width, height);
+		applyStyle(Style.FILL_AND_STROKE);
 		this.canvas.drawOval(rect, this.paint);
 	}
 
@@ -264,8 +619,30 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawString(@NonNull final String str, final int x, final int y)
 	{
-		this.paint.setStyle(Style.FILL);
-		this.paint.setTextAlign(Align.LEFT);
+		// text box approximated from text size: ascent and descent are within it
+		if (this.discarding || this.culling && culls(x, y - this.textSize, x + this.textWidthCache.measure(this.paint, str, this.typeface), y + this.textSize))
+		{
+			return;
+		}
+		if (this.levelOfDetail != LevelOfDetail.FULL && this.textSize < this.lodTextThreshold)
+		{
+			if (this.levelOfDetail == LevelOfDetail.BALANCED)
+			{
+				// placeholder bar across x-height
+				flush();
+				applyStyle(Style.FILL);
+				final float width = this.textWidthCache.measure(this.paint, str, this.typeface);
+				this.canvas.drawRect(x, y - this.textSize / 2, x + width, y - this.textSize / 2 + Math.max(1F, this.textSize / 3), this.paint);
+			}
+			return;
+		}
+		flush();
+		applyStyle(Style.FILL);
+		applyTextAlign(Align.LEFT);
+		if (this.labelCache != null && this.labelCache.draw(this.canvas, this.paint, str, x, y, this.typeface))
+		{
+			return;
+		}
 		this.canvas.drawText(str, x, y, this.paint);
 	}
 
@@ -273,9 +650,20 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawImage(@NonNull final Image image0, final int x, final int y)
 	{
+		if (this.discarding || this.culling && culls(x, y, x + image0.getWidth(), y + image0.getHeight()))
+		{
+			return;
+		}
+		flush();
 		@NonNull final treebolic.glue.Image image = (treebolic.glue.Image) image0;
-		if (image.bitmap != null)
+		if (image.bitmap != null && canDraw(image.bitmap))
 		{
+			if (this.levelOfDetail == LevelOfDetail.LOW && Math.max(image.bitmap.getWidth(), image.bitmap.getHeight()) < this.lodImageThreshold)
+			{
+				applyStyle(Style.FILL);
+				this.canvas.drawRect(x, y, x + image.bitmap.getWidth(), y + image.bitmap.getHeight(), this.paint);
+				return;
+			}
 			this.canvas.drawBitmap(image.bitmap, x, y, this.paint);
 		}
 	}
@@ -284,11 +672,221 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void drawImage(@NonNull final Image image0, final int x, final int y, final int w, final int h)
 	{
+		if (culls(x, y, x + w, y + h))
+		{
+			return;
+		}
+		flush();
 		@NonNull final treebolic.glue.Image image = (treebolic.glue.Image) image0;
-		if (image.bitmap != null)
+		if (image.bitmap != null && canDraw(image.bitmap))
 		{
-			@NonNull final Rect r = new Rect(x, y, x + w, y + h);
-			this.canvas.drawBitmap(image.bitmap, null, r, this.paint);
+			this.rect.set(x, y, x + w, y + h);
+			if (this.levelOfDetail != LevelOfDetail.FULL && Math.max(Math.abs(w), Math.abs(h)) < this.lodImageThreshold)
+			{
+				if (this.levelOfDetail == LevelOfDetail.LOW)
+				{
+					applyStyle(Style.FILL);
+					this.rect.sort();
+					this.canvas.drawRect(this.rect.left, this.rect.top, this.rect.right, this.rect.bottom, this.paint);
+				}
+				else
+				{
+					final Bitmap mip = image.getMip(Math.abs(w), Math.abs(h));
+					assert mip != null;
+					this.canvas.drawBitmap(mip, null, this.rect, this.paint);
+				}
+				return;
+			}
+			this.canvas.drawBitmap(image.bitmap, null, this.rect, this.paint);
+		}
+	}
+
+	/**
+	 * Whether bitmap can be drawn on this canvas.
+	 * Hardware canvases reject bitmaps larger than the maximum texture size, software canvases reject hardware bitmaps.
+	 *
+	 * @param bitmap bitmap
+	 * @return true if bitmap can be drawn
+	 */
+	private boolean canDraw(@NonNull final Bitmap bitmap)
+	{
+		if (this.hardware)
+		{
+			return bitmap.getWidth() <= this.canvas.getMaximumBitmapWidth() && bitmap.getHeight() <= this.canvas.getMaximumBitmapHeight();
+		}
+		return Build.VERSION.SDK_INT < Build.VERSION_CODES.O || bitmap.getConfig() != Bitmap.Config.HARDWARE;
+	}
+
+	// C U L L I N G
+
+	/**
+	 * Set whether primitives that lie outside the current clip are culled
+	 *
+	 * @param flag whether to cull
+	 */
+	public void setCulling(final boolean flag)
+	{
+		this.culling = flag;
+	}
+
+	/**
+	 * Get number of primitives culled since reset (including companion graphics)
+	 *
+	 * @return number of primitives culled
+	 */
+	public int getCulled()
+	{
+		return this.culled + (this.offscreen != null ? this.offscreen.culled : 0);
+	}
+
+	/**
+	 * Get number of primitives tested and drawn since reset (including companion graphics)
+	 *
+	 * @return number of primitives drawn
+	 */
+	public int getDrawn()
+	{
+		return this.drawn + (this.offscreen != null ? this.offscreen.drawn : 0);
+	}
+
+	/**
+	 * Whether bounds, in local coordinates, lie outside the current clip
+	 *
+	 * @param left   left
+	 * @param top    top
+	 * @param right  right
+	 * @param bottom bottom
+	 * @return true if primitive can be skipped
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean culls(final float left, final float top, final float right, final float bottom)
+	{
+		if (this.discarding)
+		{
+			// valid cached layer: skip native call, neither drawn to screen nor culled from it
+			return true;
+		}
+		if (!this.culling)
+		{
+			return false;
+		}
+		// stroke width covers half stroke plus antialiasing
+		final float pad = this.paintStrokeWidth;
+		final boolean reject = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? //
+				this.canvas.quickReject(left - pad, top - pad, right + pad, bottom + pad) : //
+				this.canvas.quickReject(left - pad, top - pad, right + pad, bottom + pad, Canvas.EdgeType.AA);
+		if (reject)
+		{
+			this.culled++;
+		}
+		else
+		{
+			this.drawn++;
+		}
+		return reject;
+	}
+
+	/**
+	 * Whether points bounds, in local coordinates, lie outside the current clip
+	 *
+	 * @param x      x coordinates
+	 * @param y      y coordinates
+	 * @param length number of points
+	 * @return true if primitive can be skipped
+	 */
+	private boolean cullsPoints(@NonNull final int[] x, @NonNull final int[] y, final int length)
+	{
+		if (this.discarding)
+		{
+			return true;
+		}
+		if (!this.culling || length == 0)
+		{
+			return false;
+		}
+		int left = x[0];
+		int right = left;
+		int top = y[0];
+		int bottom = top;
+		for (int i = 1; i < length; i++)
+		{
+			left = Math.min(left, x[i]);
+			right = Math.max(right, x[i]);
+			top = Math.min(top, y[i]);
+			bottom = Math.max(bottom, y[i]);
+		}
+		return culls(left, top, right, bottom);
+	}
+
+	// L E V E L   O F   D E T A I L
+
+	/**
+	 * Set level of detail for labels and images below size thresholds
+	 *
+	 * @param levelOfDetail0 level of detail
+	 */
+	public void setLevelOfDetail(@NonNull final LevelOfDetail levelOfDetail0)
+	{
+		this.levelOfDetail = levelOfDetail0;
+	}
+
+	/**
+	 * Set level-of-detail thresholds
+	 *
+	 * @param textThreshold  text size (pixels) below which labels are subject to level of detail
+	 * @param imageThreshold image size (pixels) below which images are subject to level of detail
+	 */
+	public void setLevelOfDetailThresholds(final float textThreshold, final int imageThreshold)
+	{
+		this.lodTextThreshold = textThreshold;
+		this.lodImageThreshold = imageThreshold;
+	}
+
+	// L I N E   B A T C H
+
+	/**
+	 * Set whether line segments are batched
+	 *
+	 * @param flag whether line segments are batched
+	 */
+	public void setLineBatching(final boolean flag)
+	{
+		flush();
+		this.lineBatching = flag;
+	}
+
+	/**
+	 * Add segment to line batch
+	 *
+	 * @param x1 x1
+	 * @param y1 y1
+	 * @param x2 x2
+	 * @param y2 y2
+	 */
+	private void batchLine(final float x1, final float y1, final float x2, final float y2)
+	{
+		if (this.linesLength + 4 > this.lines.length)
+		{
+			// grows once to the largest batch, then is reused
+			this.lines = Arrays.copyOf(this.lines, 2 * this.lines.length);
+		}
+		this.lines[this.linesLength++] = x1;
+		this.lines[this.linesLength++] = y1;
+		this.lines[this.linesLength++] = x2;
+		this.lines[this.linesLength++] = y2;
+	}
+
+	/**
+	 * Flush pending batched lines. Called before any other primitive and before paint or matrix changes, so that drawing order is preserved,
+	 * and at the end of a frame.
+	 */
+	public void flush()
+	{
+		if (this.linesLength > 0)
+		{
+			applyStyle(Style.STROKE);
+			this.canvas.drawLines(this.lines, 0, this.linesLength, this.paint);
+			this.linesLength = 0;
 		}
 	}
 
@@ -299,8 +897,13 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	{
 		if (color != null)
 		{
-			this.paint.setColor(color);
-			this.paint.setAlpha(255);
+			final int color0 = Color.makeOpaque(color);
+			if (color0 != this.color)
+			{
+				// batched lines use current color
+				flush();
+			}
+			applyColor(color0);
 		}
 	}
 
@@ -308,27 +911,48 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public Integer getColor()
 	{
-		return this.paint.getColor();
+		return this.color;
 	}
 
 	@Override
 	public void setFont(final String face0, final int style0)
 	{
 		int style = style0 == Graphics.BOLD ? Typeface.BOLD : Typeface.NORMAL;
-		final Typeface typeface = Typeface.create(face0, style);
-		this.paint.setTypeface(typeface);
+		final Typeface typeface0 = TypefaceCache.get(face0, style);
+		applyTypeface(typeface0);
 	}
 
 	@Override
 	public void setTextSize(final float size)
 	{
-		this.paint.setTextSize(size * Graphics.fontFactor * Graphics.PT2PX);
+		applyTextSize(size * Graphics.fontFactor * Graphics.PT2PX);
 	}
 
 	@Override
 	public int stringWidth(@NonNull final String string)
 	{
-		return (int) this.paint.measureText(string);
+		return (int) this.textWidthCache.measure(this.paint, string, this.typeface);
+	}
+
+	/**
+	 * Set label cache
+	 *
+	 * @param labelCache0 label cache, null to draw labels as text
+	 */
+	public void setLabelCache(@Nullable final LabelCache labelCache0)
+	{
+		this.labelCache = labelCache0;
+	}
+
+	/**
+	 * Get text width cache
+	 *
+	 * @return text width cache
+	 */
+	@NonNull
+	public TextWidthCache getTextWidthCache()
+	{
+		return this.textWidthCache;
 	}
 
 	@Override
@@ -347,39 +971,239 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void setStroke(final int stroke, int width)
 	{
-		this.paint.setStyle(Style.STROKE);
+		flush();
+		applyStyle(Style.STROKE);
 		switch (stroke)
 		{
 			case treebolic.glue.iface.Graphics.SOLID:
-				this.paint.setPathEffect(null);
+				applyPathEffect(null);
 				break;
 			case treebolic.glue.iface.Graphics.DOT:
-				this.paint.setPathEffect(Graphics.dotEffect);
-				break;
 			case treebolic.glue.iface.Graphics.DASH:
-				this.paint.setPathEffect(Graphics.dashEffect);
+				// intervals scale with the width the stroke will have
+				final int effectWidth = width > 0 ? width : Math.round(this.paintStrokeWidth / strokeWidthFactor);
+				applyPathEffect(StrokeEffects.get(stroke, effectWidth, Graphics.density));
 				break;
 			default:
 				break;
 		}
 		if (width > 0)
 		{
-			this.paint.setStrokeWidth(strokeWidthFactor * width);
+			applyStrokeWidth(strokeWidthFactor * width);
 		}
 	}
 
+	/**
+	 * Save stroke width, path effect, color and text size. Pushes nest.
+	 */
 	@Override
 	public void pushStroke()
 	{
-		this.strokeEffect = this.paint.getPathEffect();
-		this.strokeWidth = this.paint.getStrokeWidth();
+		final int depth = this.stackDepth;
+		if (depth == this.stackStrokeWidths.length)
+		{
+			// grows once to the deepest nesting, then is reused
+			final int capacity = 2 * depth;
+			this.stackStrokeWidths = Arrays.copyOf(this.stackStrokeWidths, capacity);
+			this.stackStrokeEffects = Arrays.copyOf(this.stackStrokeEffects, capacity);
+			this.stackColors = Arrays.copyOf(this.stackColors, capacity);
+			this.stackTextSizes = Arrays.copyOf(this.stackTextSizes, capacity);
+		}
+		this.stackStrokeWidths[depth] = this.paintStrokeWidth;
+		this.stackStrokeEffects[depth] = this.pathEffect;
+		this.stackColors[depth] = this.color;
+		this.stackTextSizes[depth] = this.textSize;
+		this.stackDepth = depth + 1;
 	}
 
+	/**
+	 * Restore stroke width, path effect, color and text size saved by the matching push. Unmatched pops are ignored.
+	 */
 	@Override
 	public void popStroke()
 	{
-		this.paint.setPathEffect(this.strokeEffect);
-		this.paint.setStrokeWidth(this.strokeWidth);
+		if (this.stackDepth == 0)
+		{
+			return;
+		}
+		final int depth = --this.stackDepth;
+		final float width0 = this.stackStrokeWidths[depth];
+		final PathEffect effect0 = this.stackStrokeEffects[depth];
+		final int color0 = this.stackColors[depth];
+		this.stackStrokeEffects[depth] = null;
+		if (width0 != this.paintStrokeWidth || effect0 != this.pathEffect || color0 != this.color)
+		{
+			// batched lines use current stroke and color
+			flush();
+		}
+		applyPathEffect(effect0);
+		applyStrokeWidth(width0);
+		applyColor(color0);
+		applyTextSize(this.stackTextSizes[depth]);
+	}
+
+	// P A I N T   S T A T E
+
+	/**
+	 * Set paint style if it differs from current value
+	 *
+	 * @param style0 style
+	 */
+	private void applyStyle(@NonNull final Style style0)
+	{
+		if (style0 != this.style)
+		{
+			this.paint.setStyle(style0);
+			this.style = style0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint color if it differs from current value
+	 *
+	 * @param color0 color
+	 */
+	private void applyColor(final int color0)
+	{
+		if (color0 != this.color)
+		{
+			this.paint.setColor(color0);
+			this.color = color0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint stroke width if it differs from current value
+	 *
+	 * @param width0 stroke width
+	 */
+	private void applyStrokeWidth(final float width0)
+	{
+		if (width0 != this.paintStrokeWidth)
+		{
+			this.paint.setStrokeWidth(width0);
+			this.paintStrokeWidth = width0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint path effect if it differs from current value
+	 *
+	 * @param effect0 path effect
+	 */
+	private void applyPathEffect(@Nullable final PathEffect effect0)
+	{
+		if (effect0 != this.pathEffect)
+		{
+			this.paint.setPathEffect(effect0);
+			this.pathEffect = effect0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint text size if it differs from current value
+	 *
+	 * @param size0 text size (pixels)
+	 */
+	private void applyTextSize(final float size0)
+	{
+		if (size0 != this.textSize)
+		{
+			this.paint.setTextSize(size0);
+			this.textSize = size0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint text alignment if it differs from current value
+	 *
+	 * @param align0 text alignment
+	 */
+	private void applyTextAlign(@NonNull final Align align0)
+	{
+		if (align0 != this.textAlign)
+		{
+			this.paint.setTextAlign(align0);
+			this.textAlign = align0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Set paint typeface if it differs from current value
+	 *
+	 * @param typeface0 typeface
+	 */
+	private void applyTypeface(@Nullable final Typeface typeface0)
+	{
+		if (typeface0 != this.typeface)
+		{
+			this.paint.setTypeface(typeface0);
+			this.typeface = typeface0;
+			this.paintMutations++;
+		}
+		else
+		{
+			this.paintMutationsAvoided++;
+		}
+	}
+
+	/**
+	 * Get number of paint mutations performed
+	 *
+	 * @return number of paint mutations performed
+	 */
+	public long getPaintMutations()
+	{
+		return this.paintMutations;
+	}
+
+	/**
+	 * Get number of paint mutations avoided because value was unchanged
+	 *
+	 * @return number of paint mutations avoided
+	 */
+	public long getPaintMutationsAvoided()
+	{
+		return this.paintMutationsAvoided;
+	}
+
+	/**
+	 * Reset paint mutation counters
+	 */
+	public void resetPaintMutationCounters()
+	{
+		this.paintMutations = 0;
+		this.paintMutationsAvoided = 0;
 	}
 
 	// T R A N S F O R M S
@@ -387,12 +1211,14 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void translate(final float dx, final float dy)
 	{
+		flush();
 		this.canvas.translate(dx, dy);
 	}
 
 	@Override
 	public void rotate(final float theta, final float px, final float py)
 	{
+		flush();
 		this.canvas.translate(px, py);
 		this.canvas.rotate((float) Math.toDegrees(theta));
 	}
@@ -400,18 +1226,21 @@ public class Graphics implements treebolic.glue.iface.Graphics
 	@Override
 	public void scale(final float factor, final float px, final float py)
 	{
+		flush();
 		this.canvas.scale(factor, factor, px, py);
 	}
 
 	@Override
 	public void pushMatrix()
 	{
+		flush();
 		this.canvas.save();
 	}
 
 	@Override
 	public void popMatrix()
 	{
+		flush();
 		this.canvas.restore();
 	}
 }
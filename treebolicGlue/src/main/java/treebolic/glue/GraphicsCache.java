@@ -10,20 +10,109 @@ import android.graphics.Picture;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import treebolic.glue.component.Component;
+import treebolic.glue.component.Surface;
 
 /**
  * Graphics cache implementation
+ * Content is split in layers, each cached independently and composited in order.
  *
  */
 public class GraphicsCache implements treebolic.glue.iface.GraphicsCache<Graphics>
 {
 	private static final boolean CACHE = true;
 
+	/**
+	 * Cache strategy
+	 */
+	public enum Strategy
+	{
+		/**
+		 * Draw directly
+		 */
+		NONE,
+		/**
+		 * Record to picture and replay it
+		 */
+		PICTURE,
+		/**
+		 * Rasterize once to reusable bitmap layer and blit it until invalidated
+		 */
+		BITMAP,
+		/**
+		 * Rasterize on demand to pooled tiles and blit them until invalidated
+		 */
+		TILED
+	}
+
+	/**
+	 * Layers, in compositing order
+	 */
+	public enum Layer
+	{
+		BACKGROUND, EDGES, NODES, OVERLAY
+	}
+
+	/**
+	 * Painter of layer content the engine does not draw
+	 */
+	public interface LayerPainter
+	{
+		/**
+		 * Paint layer content
+		 *
+		 * @param g      graphics context
+		 * @param width  width
+		 * @param height height
+		 */
+		void paint(@NonNull Graphics g, int width, int height);
+	}
+
+	/**
+	 * Layers
+	 */
+	static private final Layer[] LAYERS = Layer.values();
+
+	/**
+	 * Pictures, one per layer, null if strategy is not PICTURE
+	 */
 	@Nullable
-	private final Picture picture;
+	private final Picture[] pictures;
+
+	/**
+	 * Bitmap layers, one per layer, null if strategy is not BITMAP
+	 */
+	@Nullable
+	private final BitmapLayer[] layers;
+
+	/**
+	 * Tile cache, null if strategy is not TILED
+	 */
+	@Nullable
+	private final TileCache tiles;
+
+	/**
+	 * Canvases of layers used in this frame
+	 */
+	@NonNull
+	private final Canvas[] canvases = new Canvas[LAYERS.length];
+
+	/**
+	 * Whether layers are being rendered
+	 */
+	@NonNull
+	private final boolean[] rendering = new boolean[LAYERS.length];
+
+	@Nullable
+	private final Surface surface;
 
 	private final Canvas canvas;
 
+	@NonNull
+	private final Graphics graphics;
+
+	@Nullable
+	private Graphics cacheGraphics;
+
 	private final int width;
 
 	private final int height;
@@ -36,42 +125,212 @@ public class GraphicsCache implements treebolic.glue.iface.GraphicsCache<Graphic
 	 * @param width     width
 	 * @param height    height
 	 */
-	public GraphicsCache(@SuppressWarnings("unused") final Component component, @NonNull final Graphics graphics, final int width, final int height)
+	public GraphicsCache(final Component component, @NonNull final Graphics graphics, final int width, final int height)
 	{
 		this.canvas = graphics.canvas;
-		if (GraphicsCache.CACHE)
+		this.graphics = graphics;
+		this.surface = component instanceof Surface ? (Surface) component : null;
+		this.width = width;
+		this.height = height;
+
+		Strategy strategy = !GraphicsCache.CACHE ? Strategy.NONE : this.surface != null ? this.surface.getCacheStrategy() : Strategy.PICTURE;
+		if (graphics.isRecorded() && (strategy == Strategy.BITMAP || strategy == Strategy.TILED))
+		{
+			// pictures keep references to, not copies of, mutable bitmaps: layers and tiles would be rendered again while replayed
+			strategy = Strategy.PICTURE;
+		}
+		if (strategy == Strategy.BITMAP && this.surface != null)
+		{
+			this.layers = new BitmapLayer[LAYERS.length];
+			for (final Layer layer : LAYERS)
+			{
+				this.layers[layer.ordinal()] = this.surface.getCacheLayer(layer);
+			}
+			this.tiles = null;
+			this.pictures = null;
+		}
+		else if (strategy == Strategy.TILED && this.surface != null)
 		{
-			this.picture = new Picture();
-			this.width = width;
-			this.height = height;
+			this.tiles = this.surface.getTileCache();
+			this.tiles.beginFrame();
+			this.layers = null;
+			this.pictures = null;
+		}
+		// hardware canvases (API 26+ only) replay pictures
+		else if (strategy != Strategy.NONE)
+		{
+			this.layers = null;
+			this.tiles = null;
+			this.pictures = new Picture[LAYERS.length];
 		}
 		else
 		{
-			this.picture = null;
-			this.width = 0;
-			this.height = 0;
+			this.layers = null;
+			this.tiles = null;
+			this.pictures = null;
 		}
 	}
 
+	/**
+	 * Get graphics context for nodes layer
+	 *
+	 * @return graphics context
+	 */
 	@NonNull
 	@Override
 	public Graphics getGraphics()
 	{
-		if (GraphicsCache.CACHE && this.picture != null)
+		return getGraphics(Layer.NODES);
+	}
+
+	/**
+	 * Get graphics context for layer.
+	 * The context is shared by layers and is valid until the next call.
+	 *
+	 * @param layer layer
+	 * @return graphics context
+	 */
+	@NonNull
+	public Graphics getGraphics(@NonNull final Layer layer)
+	{
+		// pending batched lines, of host and previous layer, precede layer content
+		this.graphics.flush();
+		if (this.cacheGraphics != null)
+		{
+			this.cacheGraphics.flush();
+		}
+
+		final int i = layer.ordinal();
+		Canvas canvas = this.canvases[i];
+		if (canvas == null)
 		{
-			final Canvas canvas = this.picture.beginRecording(this.width, this.height);
-			return new Graphics(canvas);
+			if (this.layers != null)
+			{
+				// valid layer: its content is unchanged, drawing is discarded and the layer is blitted
+				final BitmapLayer bitmapLayer = this.layers[i];
+				this.rendering[i] = bitmapLayer.ensure(this.width, this.height) && !bitmapLayer.isValid();
+				canvas = this.rendering[i] ? bitmapLayer.beginRender() : bitmapLayer.getDiscardCanvas();
+			}
+			else if (this.tiles != null)
+			{
+				this.rendering[i] = !this.tiles.isValid(i);
+				canvas = this.rendering[i] ? this.tiles.beginRecording(i, this.width, this.height) : this.tiles.getDiscardCanvas();
+			}
+			else if (this.pictures != null)
+			{
+				this.pictures[i] = new Picture();
+				canvas = this.pictures[i].beginRecording(this.width, this.height);
+			}
+			else
+			{
+				canvas = this.canvas;
+			}
+			this.canvases[i] = canvas;
 		}
-		return new Graphics(this.canvas);
+		this.cacheGraphics = this.graphics.getOffscreen(canvas);
+		return this.cacheGraphics;
 	}
 
 	@Override
 	public void put(@NonNull final Graphics graphics)
 	{
-		if (GraphicsCache.CACHE && this.picture != null)
+		// pending batched lines
+		if (this.cacheGraphics != null)
+		{
+			this.cacheGraphics.flush();
+		}
+
+		// layers the engine did not draw
+		if (this.surface != null)
+		{
+			for (final Layer layer : LAYERS)
+			{
+				final int i = layer.ordinal();
+				final LayerPainter painter = this.surface.getLayerPainter(layer);
+				if (painter != null && this.canvases[i] == null && !isValid(i))
+				{
+					final Graphics g = getGraphics(layer);
+					painter.paint(g, this.width, this.height);
+					g.flush();
+				}
+			}
+		}
+
+		// composite
+		if (this.layers != null)
+		{
+			graphics.flush();
+			for (final Layer layer : LAYERS)
+			{
+				final int i = layer.ordinal();
+				final BitmapLayer bitmapLayer = this.layers[i];
+				final boolean rendered = this.rendering[i];
+				if (rendered)
+				{
+					bitmapLayer.endRender();
+					this.rendering[i] = false;
+				}
+				else if (this.canvases[i] == null && !bitmapLayer.isValid())
+				{
+					// invalidated and nobody draws it any longer
+					bitmapLayer.release();
+					continue;
+				}
+				if (rendered || bitmapLayer.isValid())
+				{
+					bitmapLayer.draw(graphics.canvas);
+				}
+			}
+		}
+		else if (this.tiles != null)
+		{
+			graphics.flush();
+			for (final Layer layer : LAYERS)
+			{
+				final int i = layer.ordinal();
+				if (this.rendering[i])
+				{
+					this.tiles.endRecording(i);
+					this.rendering[i] = false;
+				}
+				else if (this.canvases[i] == null && !this.tiles.isValid(i))
+				{
+					// invalidated and nobody draws it any longer
+					this.tiles.clear(i);
+				}
+			}
+			this.tiles.draw(graphics.canvas, this.width, this.height);
+		}
+		else if (this.pictures != null)
+		{
+			graphics.flush();
+			for (final Picture picture : this.pictures)
+			{
+				if (picture != null)
+				{
+					picture.endRecording();
+					graphics.canvas.drawPicture(picture);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether cached layer content is valid, so that it need not be drawn again
+	 *
+	 * @param i layer index
+	 * @return true if layer content is valid
+	 */
+	private boolean isValid(final int i)
+	{
+		if (this.layers != null)
+		{
+			return this.layers[i].isValid();
+		}
+		if (this.tiles != null)
 		{
-			this.picture.endRecording();
-			graphics.canvas.drawPicture(this.picture);
+			return this.tiles.isValid(i);
 		}
+		return false;
 	}
 }
@@ -33,6 +33,17 @@ public class Image implements treebolic.glue.iface.Image, Serializable
 	@Nullable
 	transient public Bitmap bitmap;
 
+	/**
+	 * Downsampled mips, indexed by level (level n is 1/2^n of bitmap size), created on demand (not serialized)
+	 */
+	@Nullable
+	transient private Bitmap[] mips;
+
+	/**
+	 * Maximum mip level
+	 */
+	static private final int MAX_MIP_LEVEL = 8;
+
 	/**
 	 * Bitmap factory options
 	 */
@@ -109,6 +120,44 @@ public class Image implements treebolic.glue.iface.Image, Serializable
 		return this.bitmap.getHeight();
 	}
 
+	/**
+	 * Get smallest mip that is at least the given size
+	 *
+	 * @param width  target width
+	 * @param height target height
+	 * @return mip bitmap, the bitmap itself if no smaller mip fits, null if no bitmap
+	 */
+	@Nullable
+	public Bitmap getMip(final int width, final int height)
+	{
+		if (this.bitmap == null)
+		{
+			return null;
+		}
+		int level = 0;
+		while (level < MAX_MIP_LEVEL && this.bitmap.getWidth() >> (level + 1) >= Math.max(width, 1) && this.bitmap.getHeight() >> (level + 1) >= Math.max(height, 1))
+		{
+			level++;
+		}
+		if (level == 0)
+		{
+			return this.bitmap;
+		}
+		if (this.mips == null || this.mips[0] != this.bitmap)
+		{
+			this.mips = new Bitmap[MAX_MIP_LEVEL + 1];
+			this.mips[0] = this.bitmap;
+		}
+		if (this.mips[level] == null)
+		{
+			// halve previous level for quality
+			final Bitmap previous = getMip(this.bitmap.getWidth() >> (level - 1), this.bitmap.getHeight() >> (level - 1));
+			assert previous != null;
+			this.mips[level] = Bitmap.createScaledBitmap(previous, this.bitmap.getWidth() >> level, this.bitmap.getHeight() >> level, true);
+		}
+		return this.mips[level];
+	}
+
 	// O V E R R I D E    S E R I A L I Z A T I O N
 
 	/**
@@ -138,6 +187,7 @@ public class Image implements treebolic.glue.iface.Image, Serializable
 		@NonNull final Options opt = new Options();
 		opt.inPreferredConfig = Bitmap.Config.ARGB_8888;
 		this.bitmap = imageByteArray == null ? null : BitmapFactory.decodeByteArray(imageByteArray, 0, imageByteArray.length, opt);
+		this.mips = null;
 	}
 
 	/**
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Pre-rendered label cache
+ * Each distinct (string, typeface, text size, color) is rasterized once into a bitmap, later draws blit it.
+ * Entries are evicted in LRU order to stay within a memory budget.
+ * Not thread-safe: it is owned by the graphics context of one render thread.
+ *
+ * @author Bernard Bou
+ */
+public class LabelCache
+{
+	/**
+	 * Default memory budget (bytes)
+	 */
+	static public final int DEFAULT_BUDGET = 4 * 1024 * 1024;
+
+	/**
+	 * Padding around text (pixels), for antialiasing and glyph overhang
+	 */
+	static private final int PAD = 2;
+
+	/**
+	 * Cache key
+	 */
+	static private final class Key
+	{
+		private String string;
+
+		@Nullable
+		private Typeface typeface;
+
+		private float textSize;
+
+		private int color;
+
+		private int hash;
+
+		@NonNull
+		Key set(@NonNull final String string0, @Nullable final Typeface typeface0, final float textSize0, final int color0)
+		{
+			this.string = string0;
+			this.typeface = typeface0;
+			this.textSize = textSize0;
+			this.color = color0;
+			this.hash = 31 * (31 * (31 * string0.hashCode() + System.identityHashCode(typeface0)) + Float.floatToIntBits(textSize0)) + color0;
+			return this;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(@Nullable final Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			final Key that = (Key) obj;
+			return this.hash == that.hash && this.typeface == that.typeface && this.color == that.color && Float.compare(this.textSize, that.textSize) == 0 && this.string.equals(that.string);
+		}
+	}
+
+	/**
+	 * Cache entry
+	 */
+	static private final class Entry
+	{
+		@NonNull
+		final Bitmap bitmap;
+
+		/**
+		 * Baseline offset from bitmap top
+		 */
+		final float baseline;
+
+		Entry(@NonNull final Bitmap bitmap, final float baseline)
+		{
+			this.bitmap = bitmap;
+			this.baseline = baseline;
+		}
+	}
+
+	/**
+	 * Entries, in access order
+	 */
+	@NonNull
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75F, true);
+
+	/**
+	 * Lookup key, reused
+	 */
+	@NonNull
+	private final Key probe = new Key();
+
+	/**
+	 * Font metrics, reused
+	 */
+	@NonNull
+	private final Paint.FontMetrics metrics = new Paint.FontMetrics();
+
+	/**
+	 * Paint used to blit labels
+	 */
+	@NonNull
+	private final Paint blitPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * Memory budget (bytes)
+	 */
+	private int budget;
+
+	/**
+	 * Memory used (bytes)
+	 */
+	private int size;
+
+	/**
+	 * Constructor
+	 */
+	public LabelCache()
+	{
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param budget0 memory budget (bytes)
+	 */
+	public LabelCache(final int budget0)
+	{
+		this.budget = budget0;
+	}
+
+	/**
+	 * Set memory budget
+	 *
+	 * @param budget0 memory budget (bytes)
+	 */
+	@SuppressWarnings("unused")
+	public void setBudget(final int budget0)
+	{
+		this.budget = budget0;
+		trim();
+	}
+
+	/**
+	 * Get memory used
+	 *
+	 * @return memory used (bytes)
+	 */
+	@SuppressWarnings("unused")
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Draw label, with drawText semantics (left-aligned, y is baseline)
+	 *
+	 * @param canvas   canvas
+	 * @param paint    text paint (typeface, text size and color set)
+	 * @param string   text
+	 * @param x        x
+	 * @param y        baseline y
+	 * @param typeface typeface set on paint (identity is used as key)
+	 * @return false if label could not be cached, in which case the caller draws it
+	 */
+	public boolean draw(@NonNull final Canvas canvas, @NonNull final Paint paint, @NonNull final String string, final int x, final int y, @Nullable final Typeface typeface)
+	{
+		final float textSize = paint.getTextSize();
+		final int color = paint.getColor();
+		Entry entry = this.entries.get(this.probe.set(string, typeface, textSize, color));
+		if (entry == null)
+		{
+			entry = render(paint, string);
+			if (entry == null)
+			{
+				return false;
+			}
+			this.entries.put(new Key().set(string, typeface, textSize, color), entry);
+			this.size += entry.bitmap.getByteCount();
+			trim();
+		}
+		canvas.drawBitmap(entry.bitmap, x - PAD, y - entry.baseline, this.blitPaint);
+		return true;
+	}
+
+	/**
+	 * Clear cache
+	 */
+	public void clear()
+	{
+		this.entries.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * Rasterize label
+	 *
+	 * @param paint  text paint
+	 * @param string text
+	 * @return entry or null if label is empty or larger than budget
+	 */
+	@Nullable
+	private Entry render(@NonNull final Paint paint, @NonNull final String string)
+	{
+		paint.getFontMetrics(this.metrics);
+		final int width = (int) Math.ceil(paint.measureText(string)) + 2 * PAD;
+		final int height = (int) Math.ceil(this.metrics.bottom - this.metrics.top) + 2 * PAD;
+		if (width <= 2 * PAD || height <= 2 * PAD || 4L * width * height > this.budget)
+		{
+			return null;
+		}
+		final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		final float baseline = PAD - this.metrics.top;
+		@NonNull final Canvas canvas = new Canvas(bitmap);
+		canvas.drawText(string, PAD, baseline, paint);
+		return new Entry(bitmap, baseline);
+	}
+
+	/**
+	 * Evict least recently used entries until within budget
+	 * Evicted bitmaps are not recycled: they may still be referenced by a picture being recorded.
+	 */
+	private void trim()
+	{
+		final Iterator<Map.Entry<Key, Entry>> it = this.entries.entrySet().iterator();
+		while (this.size > this.budget && it.hasNext())
+		{
+			final Entry entry = it.next().getValue();
+			this.size -= entry.bitmap.getByteCount();
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+/**
+ * Level-of-detail tiers for labels and images that render below a pixel-size threshold
+ *
+ * @author Bernard Bou
+ */
+public enum LevelOfDetail
+{
+	/**
+	 * Full fidelity: small labels and images are rendered as is
+	 */
+	FULL,
+	/**
+	 * Small labels are replaced by a placeholder bar, small scaled images by a downsampled mip
+	 */
+	BALANCED,
+	/**
+	 * Small labels are skipped, small images are replaced by a filled rectangle
+	 */
+	LOW
+}
@@ -26,6 +26,22 @@ public class Rectangle2D extends RectF implements treebolic.glue.iface.Rectangle
 	 */
 	@NonNull
 	public static RectF makeRect(final double left0, final double top0, final double width0, final double height0)
+	{
+		return makeRect(new RectF(), left0, top0, width0, height0);
+	}
+
+	/**
+	 * Set rectangle from topleft and size
+	 *
+	 * @param rect    rectangle to set
+	 * @param left0   left
+	 * @param top0    top
+	 * @param width0  width
+	 * @param height0 height
+	 * @return rectangle that was passed
+	 */
+	@NonNull
+	public static RectF makeRect(@NonNull final RectF rect, final double left0, final double top0, final double width0, final double height0)
 	{
 		double left = left0;
 		double top = top0;
@@ -42,7 +58,8 @@ public class Rectangle2D extends RectF implements treebolic.glue.iface.Rectangle
 			top = bottom;
 			bottom = top0;
 		}
-		return new RectF((float) left, (float) top, (float) right, (float) bottom);
+		rect.set((float) left, (float) top, (float) right, (float) bottom);
+		return rect;
 	}
 
 	/**
@@ -55,7 +72,8 @@ public class Rectangle2D extends RectF implements treebolic.glue.iface.Rectangle
 	 */
 	public Rectangle2D(final int x, final int y, final int w, final int h)
 	{
-		super(Rectangle2D.makeRect(x, y, w, h));
+		super();
+		Rectangle2D.makeRect(this, x, y, w, h);
 	}
 
 	/**
@@ -69,7 +87,7 @@ public class Rectangle2D extends RectF implements treebolic.glue.iface.Rectangle
 	@Override
 	public void setFrame(final double x, final double y, final double width, final double height)
 	{
-		super.set(Rectangle2D.makeRect(x, y, width, height));
+		Rectangle2D.makeRect(this, x, y, width, height);
 	}
 
 	@Override
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.DashPathEffect;
+import android.graphics.PathEffect;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Process-wide cache of dot and dash path effects keyed by (stroke type, width, display density)
+ * Effects are computed lazily and shared across threads.
+ *
+ * @author Bernard Bou
+ */
+public class StrokeEffects
+{
+	/**
+	 * Dot on-interval, off-interval for unit width and density
+	 */
+	static private final float[] DOT_INTERVALS = {5, 3};
+
+	/**
+	 * Dash on-interval, off-interval for unit width and density
+	 */
+	static private final float[] DASH_INTERVALS = {2, 2};
+
+	/**
+	 * Largest cached width, wider strokes use it
+	 */
+	static private final int MAX_WIDTH = 64;
+
+	/**
+	 * Effects for one density, indexed by width
+	 */
+	static private final class Table
+	{
+		final float density;
+
+		@NonNull
+		final AtomicReferenceArray<PathEffect> dots = new AtomicReferenceArray<>(MAX_WIDTH + 1);
+
+		@NonNull
+		final AtomicReferenceArray<PathEffect> dashes = new AtomicReferenceArray<>(MAX_WIDTH + 1);
+
+		Table(final float density)
+		{
+			this.density = density;
+		}
+	}
+
+	/**
+	 * Current table, replaced when density changes
+	 */
+	@NonNull
+	static private volatile Table table = new Table(1F);
+
+	/**
+	 * Get path effect
+	 *
+	 * @param stroke  stroke type (SOLID, DOT, DASH)
+	 * @param width   stroke width
+	 * @param density display density
+	 * @return path effect, null for solid strokes
+	 */
+	@Nullable
+	static public PathEffect get(final int stroke, final int width, final float density)
+	{
+		final float[] intervals;
+		switch (stroke)
+		{
+			case treebolic.glue.iface.Graphics.DOT:
+				intervals = DOT_INTERVALS;
+				break;
+			case treebolic.glue.iface.Graphics.DASH:
+				intervals = DASH_INTERVALS;
+				break;
+			default:
+				return null;
+		}
+
+		Table table0 = table;
+		if (table0.density != density)
+		{
+			table0 = new Table(density);
+			table = table0;
+		}
+
+		final int w = Math.max(1, Math.min(width, MAX_WIDTH));
+		final AtomicReferenceArray<PathEffect> effects = intervals == DOT_INTERVALS ? table0.dots : table0.dashes;
+		final PathEffect effect = effects.get(w);
+		if (effect != null)
+		{
+			return effect;
+		}
+		final float scale = w * density;
+		@NonNull final PathEffect newEffect = new DashPathEffect(new float[]{intervals[0] * scale, intervals[1] * scale}, 0);
+		return effects.compareAndSet(w, null, newEffect) ? newEffect : effects.get(w);
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Bounded LRU cache of text widths keyed by (string, typeface, text size)
+ * Not thread-safe: it is owned by the graphics context of one render thread.
+ *
+ * @author Bernard Bou
+ */
+public class TextWidthCache
+{
+	/**
+	 * Default capacity (entries)
+	 */
+	static public final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Cache key
+	 */
+	static private final class Key
+	{
+		private String string;
+
+		@Nullable
+		private Typeface typeface;
+
+		private float textSize;
+
+		private int hash;
+
+		@NonNull
+		Key set(@NonNull final String string0, @Nullable final Typeface typeface0, final float textSize0)
+		{
+			this.string = string0;
+			this.typeface = typeface0;
+			this.textSize = textSize0;
+			this.hash = 31 * (31 * string0.hashCode() + System.identityHashCode(typeface0)) + Float.floatToIntBits(textSize0);
+			return this;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(@Nullable final Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			final Key that = (Key) obj;
+			return this.hash == that.hash && this.typeface == that.typeface && Float.compare(this.textSize, that.textSize) == 0 && this.string.equals(that.string);
+		}
+	}
+
+	/**
+	 * Widths, in access order
+	 */
+	@NonNull
+	private final LinkedHashMap<Key, Float> widths;
+
+	/**
+	 * Lookup key, reused
+	 */
+	@NonNull
+	private final Key probe = new Key();
+
+	/**
+	 * Font factor the cached widths were measured with
+	 */
+	private float fontFactor;
+
+	/**
+	 * Point-to-pixel factor the cached widths were measured with
+	 */
+	private float pt2px;
+
+	/**
+	 * Hit count
+	 */
+	private long hits;
+
+	/**
+	 * Miss count
+	 */
+	private long misses;
+
+	/**
+	 * Constructor
+	 */
+	public TextWidthCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity capacity (entries)
+	 */
+	public TextWidthCache(final int capacity)
+	{
+		this.widths = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75F, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Float> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+		this.fontFactor = Graphics.fontFactor;
+		this.pt2px = Graphics.PT2PX;
+	}
+
+	/**
+	 * Measure text width
+	 *
+	 * @param paint    paint, with text size and typeface set
+	 * @param string   text
+	 * @param typeface typeface set on paint (identity is used as key)
+	 * @return text width
+	 */
+	public float measure(@NonNull final Paint paint, @NonNull final String string, @Nullable final Typeface typeface)
+	{
+		// font factors changed since widths were measured
+		if (this.fontFactor != Graphics.fontFactor || this.pt2px != Graphics.PT2PX)
+		{
+			invalidate();
+		}
+
+		final float textSize = paint.getTextSize();
+		final Float width = this.widths.get(this.probe.set(string, typeface, textSize));
+		if (width != null)
+		{
+			this.hits++;
+			return width;
+		}
+		this.misses++;
+		final float measured = paint.measureText(string);
+		this.widths.put(new Key().set(string, typeface, textSize), measured);
+		return measured;
+	}
+
+	/**
+	 * Invalidate all cached widths
+	 */
+	public void invalidate()
+	{
+		this.widths.clear();
+		this.fontFactor = Graphics.fontFactor;
+		this.pt2px = Graphics.PT2PX;
+	}
+
+	/**
+	 * Get hit count
+	 *
+	 * @return hit count
+	 */
+	public long getHits()
+	{
+		return this.hits;
+	}
+
+	/**
+	 * Get miss count
+	 *
+	 * @return miss count
+	 */
+	public long getMisses()
+	{
+		return this.misses;
+	}
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.graphics.Rect;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tiled render cache
+ * Layers are recorded to pictures, which are rasterized on demand to fixed-size tiles kept in an LRU pool of bounded memory.
+ * Tiles are addressed in content coordinates, so that after a pan only newly exposed tiles are rendered.
+ * Rendering happens on the render thread, invalidation and pans may come from any thread.
+ *
+ * @author Bernard Bou
+ */
+public class TileCache
+{
+	/**
+	 * Tile size (pixels)
+	 */
+	static public final int TILE_SIZE = 256;
+
+	/**
+	 * Tile size shift, arithmetic right shift floors negative coordinates too
+	 */
+	static private final int TILE_SHIFT = 8;
+
+	/**
+	 * Default memory budget (bytes)
+	 */
+	static public final int DEFAULT_BUDGET = 24 * 1024 * 1024;
+
+	/**
+	 * Tile byte count
+	 */
+	static private final int TILE_BYTES = 4 * TILE_SIZE * TILE_SIZE;
+
+	/**
+	 * Tile
+	 */
+	static private final class Tile
+	{
+		@NonNull
+		final Bitmap bitmap;
+
+		@NonNull
+		final Canvas canvas;
+
+		/**
+		 * Content generation the tile was rasterized from
+		 */
+		int stamp;
+
+		/**
+		 * Content area rasterized, in content coordinates
+		 */
+		@NonNull
+		final Rect covered = new Rect();
+
+		/**
+		 * Last frame the tile was drawn in
+		 */
+		long frame;
+
+		Tile()
+		{
+			this.bitmap = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+			this.canvas = new Canvas(this.bitmap);
+		}
+	}
+
+	/**
+	 * Tiles keyed by packed tile coordinates, in access order
+	 */
+	@NonNull
+	private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(64, 0.75F, true);
+
+	/**
+	 * Layer pictures, null if layer is empty
+	 */
+	@NonNull
+	private final Picture[] pictures;
+
+	/**
+	 * Origin of content coordinates when layer pictures were recorded
+	 */
+	@NonNull
+	private final int[] recordOrigins;
+
+	/**
+	 * Layer generations, incremented when layers need recording
+	 */
+	@NonNull
+	private final AtomicIntegerArray generations;
+
+	/**
+	 * Layer generations recorded
+	 */
+	@NonNull
+	private final int[] recordedGenerations;
+
+	/**
+	 * Layer generations being recorded
+	 */
+	@NonNull
+	private final int[] recordingGenerations;
+
+	/**
+	 * Content generation, incremented when content changes (not when it is panned)
+	 */
+	@NonNull
+	private final AtomicInteger stamp = new AtomicInteger(0);
+
+	/**
+	 * Canvas with no backing bitmap, swallows drawing while layer is valid
+	 */
+	@NonNull
+	private final Canvas discardCanvas = new Canvas();
+
+	/**
+	 * Visible area in content coordinates (scratch)
+	 */
+	@NonNull
+	private final Rect visible = new Rect();
+
+	/**
+	 * Tile area in content coordinates (scratch)
+	 */
+	@NonNull
+	private final Rect area = new Rect();
+
+	/**
+	 * Origin of content coordinates (guarded by this)
+	 */
+	private int originX;
+
+	private int originY;
+
+	/**
+	 * Origin and content generation captured at frame start
+	 */
+	private int frameOriginX;
+
+	private int frameOriginY;
+
+	private int frameStamp;
+
+	/**
+	 * Frame count
+	 */
+	private long frame;
+
+	/**
+	 * Maximum number of tiles in pool
+	 */
+	private int capacity;
+
+	/**
+	 * Rendered tile count
+	 */
+	private long rendered;
+
+	/**
+	 * Reused tile count
+	 */
+	private long reused;
+
+	/**
+	 * Constructor
+	 *
+	 * @param layers number of layers
+	 */
+	public TileCache(final int layers)
+	{
+		this(layers, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param layers  number of layers
+	 * @param budget0 memory budget (bytes)
+	 */
+	public TileCache(final int layers, final int budget0)
+	{
+		this.pictures = new Picture[layers];
+		this.recordOrigins = new int[2 * layers];
+		this.generations = new AtomicIntegerArray(layers);
+		this.recordedGenerations = new int[layers];
+		this.recordingGenerations = new int[layers];
+		for (int i = 0; i < layers; i++)
+		{
+			this.recordedGenerations[i] = -1;
+		}
+		this.capacity = Math.max(1, budget0 / TILE_BYTES);
+	}
+
+	/**
+	 * Set memory budget, takes effect on next frame
+	 *
+	 * @param budget0 memory budget (bytes)
+	 */
+	@SuppressWarnings("unused")
+	public void setBudget(final int budget0)
+	{
+		this.capacity = Math.max(1, budget0 / TILE_BYTES);
+	}
+
+	// I N V A L I D A T I O N
+
+	/**
+	 * Invalidate all layers
+	 */
+	public void invalidate()
+	{
+		for (int i = 0; i < this.pictures.length; i++)
+		{
+			this.generations.incrementAndGet(i);
+		}
+		this.stamp.incrementAndGet();
+	}
+
+	/**
+	 * Invalidate layer
+	 *
+	 * @param layer layer index
+	 */
+	public void invalidate(final int layer)
+	{
+		this.generations.incrementAndGet(layer);
+		this.stamp.incrementAndGet();
+	}
+
+	/**
+	 * Pan content. Tiles are kept: only newly exposed ones are rendered, from layers recorded again.
+	 *
+	 * @param dx x shift of content on surface
+	 * @param dy y shift of content on surface
+	 */
+	public synchronized void pan(final int dx, final int dy)
+	{
+		this.originX -= dx;
+		this.originY -= dy;
+		for (int i = 0; i < this.pictures.length; i++)
+		{
+			this.generations.incrementAndGet(i);
+		}
+	}
+
+	/**
+	 * Whether layer recording is valid
+	 *
+	 * @param layer layer index
+	 * @return true if layer need not be recorded again
+	 */
+	public boolean isValid(final int layer)
+	{
+		return this.recordedGenerations[layer] == this.generations.get(layer);
+	}
+
+	// F R A M E
+
+	/**
+	 * Begin frame: capture origin and content generation
+	 */
+	public void beginFrame()
+	{
+		synchronized (this)
+		{
+			this.frameOriginX = this.originX;
+			this.frameOriginY = this.originY;
+		}
+		this.frameStamp = this.stamp.get();
+		this.frame++;
+	}
+
+	/**
+	 * Begin recording layer
+	 *
+	 * @param layer  layer index
+	 * @param width  width
+	 * @param height height
+	 * @return canvas to record layer to
+	 */
+	@NonNull
+	public Canvas beginRecording(final int layer, final int width, final int height)
+	{
+		this.recordingGenerations[layer] = this.generations.get(layer);
+		if (this.pictures[layer] == null)
+		{
+			this.pictures[layer] = new Picture();
+		}
+		this.recordOrigins[2 * layer] = this.frameOriginX;
+		this.recordOrigins[2 * layer + 1] = this.frameOriginY;
+		return this.pictures[layer].beginRecording(width, height);
+	}
+
+	/**
+	 * End recording layer
+	 *
+	 * @param layer layer index
+	 */
+	public void endRecording(final int layer)
+	{
+		assert this.pictures[layer] != null;
+		this.pictures[layer].endRecording();
+		this.recordedGenerations[layer] = this.recordingGenerations[layer];
+	}
+
+	/**
+	 * Mark layer as empty
+	 *
+	 * @param layer layer index
+	 */
+	public void clear(final int layer)
+	{
+		this.pictures[layer] = null;
+		this.recordedGenerations[layer] = this.generations.get(layer);
+	}
+
+	/**
+	 * Get canvas that discards drawing, for when layer is valid
+	 *
+	 * @return discarding canvas
+	 */
+	@NonNull
+	public Canvas getDiscardCanvas()
+	{
+		return this.discardCanvas;
+	}
+
+	/**
+	 * Draw visible tiles, rendering those missing or stale
+	 *
+	 * @param target target canvas
+	 * @param width  width
+	 * @param height height
+	 */
+	public void draw(@NonNull final Canvas target, final int width, final int height)
+	{
+		this.visible.set(this.frameOriginX, this.frameOriginY, this.frameOriginX + width, this.frameOriginY + height);
+		final int tx0 = this.visible.left >> TILE_SHIFT;
+		final int ty0 = this.visible.top >> TILE_SHIFT;
+		final int tx1 = (this.visible.right - 1) >> TILE_SHIFT;
+		final int ty1 = (this.visible.bottom - 1) >> TILE_SHIFT;
+		for (int ty = ty0; ty <= ty1; ty++)
+		{
+			for (int tx = tx0; tx <= tx1; tx++)
+			{
+				final int left = tx * TILE_SIZE;
+				final int top = ty * TILE_SIZE;
+				this.area.set(left, top, left + TILE_SIZE, top + TILE_SIZE);
+				this.area.intersect(this.visible);
+
+				final Tile tile = obtain(tx, ty);
+				if (tile == null)
+				{
+					// out of budget: draw pictures clipped to tile
+					target.save();
+					target.clipRect(this.area.left - this.frameOriginX, this.area.top - this.frameOriginY, this.area.right - this.frameOriginX, this.area.bottom - this.frameOriginY);
+					drawPictures(target, this.frameOriginX, this.frameOriginY);
+					target.restore();
+					continue;
+				}
+				if (tile.stamp != this.frameStamp || !tile.covered.contains(this.area))
+				{
+					tile.bitmap.eraseColor(Color.TRANSPARENT);
+					drawPictures(tile.canvas, left, top);
+					tile.stamp = this.frameStamp;
+					tile.covered.set(this.area);
+					this.rendered++;
+				}
+				else
+				{
+					this.reused++;
+				}
+				tile.frame = this.frame;
+				target.drawBitmap(tile.bitmap, left - this.frameOriginX, top - this.frameOriginY, null);
+			}
+		}
+	}
+
+	/**
+	 * Draw layer pictures
+	 *
+	 * @param canvas canvas
+	 * @param x      content x of canvas origin
+	 * @param y      content y of canvas origin
+	 */
+	private void drawPictures(@NonNull final Canvas canvas, final int x, final int y)
+	{
+		for (int i = 0; i < this.pictures.length; i++)
+		{
+			final Picture picture = this.pictures[i];
+			if (picture != null)
+			{
+				canvas.save();
+				canvas.translate(this.recordOrigins[2 * i] - x, this.recordOrigins[2 * i + 1] - y);
+				canvas.drawPicture(picture);
+				canvas.restore();
+			}
+		}
+	}
+
+	/**
+	 * Obtain tile, reusing the least recently used one when pool is full
+	 *
+	 * @param tx tile x
+	 * @param ty tile y
+	 * @return tile, null if all pooled tiles are in use in this frame
+	 */
+	@Nullable
+	private Tile obtain(final int tx, final int ty)
+	{
+		final long key = ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+		Tile tile = this.tiles.get(key);
+		if (tile != null)
+		{
+			return tile;
+		}
+		if (this.tiles.size() < this.capacity)
+		{
+			tile = new Tile();
+		}
+		else
+		{
+			// evict least recently used tile not drawn in this frame, excess tiles if budget shrank
+			final Iterator<Map.Entry<Long, Tile>> it = this.tiles.entrySet().iterator();
+			while (it.hasNext())
+			{
+				final Tile eldest = it.next().getValue();
+				if (eldest.frame == this.frame)
+				{
+					return null;
+				}
+				it.remove();
+				if (this.tiles.size() < this.capacity)
+				{
+					tile = eldest;
+					break;
+				}
+				eldest.bitmap.recycle();
+			}
+			if (tile == null)
+			{
+				return null;
+			}
+			tile.stamp = -1;
+			tile.covered.setEmpty();
+		}
+		this.tiles.put(key, tile);
+		return tile;
+	}
+
+	/**
+	 * Release tiles and pictures
+	 */
+	public void release()
+	{
+		for (final Tile tile : this.tiles.values())
+		{
+			tile.bitmap.recycle();
+		}
+		this.tiles.clear();
+		for (int i = 0; i < this.pictures.length; i++)
+		{
+			this.pictures[i] = null;
+			this.recordedGenerations[i] = -1;
+		}
+	}
+
+	/**
+	 * Get memory used
+	 *
+	 * @return memory used (bytes)
+	 */
+	@SuppressWarnings("unused")
+	public int getSize()
+	{
+		return this.tiles.size() * TILE_BYTES;
+	}
+
+	/**
+	 * Get rendered tile count
+	 *
+	 * @return number of tiles rendered
+	 */
+	@SuppressWarnings("unused")
+	public long getRendered()
+	{
+		return this.rendered;
+	}
+
+	/**
+	 * Get reused tile count
+	 *
+	 * @return number of tiles drawn as cached
+	 */
+	@SuppressWarnings("unused")
+	public long getReused()
+	{
+		return this.reused;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Typeface;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Process-wide typeface cache keyed by (face, style)
+ *
+ * @author Bernard Bou
+ */
+public class TypefaceCache
+{
+	/**
+	 * Key for null (default) face, as the map does not take null keys
+	 */
+	static private final String DEFAULT_FACE = "";
+
+	/**
+	 * Number of styles (NORMAL, BOLD, ITALIC, BOLD_ITALIC)
+	 */
+	static private final int STYLES = 4;
+
+	/**
+	 * Typefaces indexed by face, then style, published safely to other threads
+	 */
+	static private final ConcurrentHashMap<String, AtomicReferenceArray<Typeface>> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Get typeface
+	 *
+	 * @param face  face family name, null for default
+	 * @param style typeface style (Typeface.NORMAL, Typeface.BOLD, Typeface.ITALIC, Typeface.BOLD_ITALIC)
+	 * @return typeface
+	 */
+	static public Typeface get(@Nullable final String face, final int style)
+	{
+		final String key = face == null ? DEFAULT_FACE : face;
+		AtomicReferenceArray<Typeface> typefaces = cache.get(key);
+		if (typefaces == null)
+		{
+			@NonNull final AtomicReferenceArray<Typeface> newTypefaces = new AtomicReferenceArray<>(STYLES);
+			typefaces = cache.putIfAbsent(key, newTypefaces);
+			if (typefaces == null)
+			{
+				typefaces = newTypefaces;
+			}
+		}
+		final Typeface typeface = typefaces.get(style);
+		if (typeface != null)
+		{
+			return typeface;
+		}
+		// concurrent misses create equivalent typefaces, the first one published wins
+		@NonNull final Typeface newTypeface = Typeface.create(face, style);
+		return typefaces.compareAndSet(style, null, newTypeface) ? newTypeface : typefaces.get(style);
+	}
+
+	/**
+	 * Clear cache
+	 */
+	@SuppressWarnings("unused")
+	static public void clear()
+	{
+		cache.clear();
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue.component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Frame timing metrics for draw cycles
+ * Samples are written by the render thread into a ring buffer without locking. Readers take snapshots and may observe a sample while it is overwritten,
+ * which is acceptable for statistics.
+ *
+ * @author Bernard Bou
+ */
+public class FrameMetrics
+{
+	/**
+	 * Default ring buffer capacity (frames)
+	 */
+	static public final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Draw cycle phases
+	 */
+	public enum Phase
+	{
+		/**
+		 * Wait for canvas lock
+		 */
+		LOCK,
+		/**
+		 * Surface paint
+		 */
+		PAINT,
+		/**
+		 * Unlock and post
+		 */
+		POST,
+		/**
+		 * Idle time between end of previous post and canvas lock request
+		 */
+		IDLE
+	}
+
+	/**
+	 * Frame listener, called on the render thread, so it should return quickly
+	 */
+	public interface Listener
+	{
+		/**
+		 * Frame has been posted
+		 *
+		 * @param lockNanos  lock duration in nanoseconds
+		 * @param paintNanos paint duration in nanoseconds
+		 * @param postNanos  unlock-and-post duration in nanoseconds
+		 * @param idleNanos  idle duration before this frame in nanoseconds
+		 * @param backend    rendering backend in use
+		 */
+		void onFrame(long lockNanos, long paintNanos, long postNanos, long idleNanos, @NonNull TreebolicThread.Backend backend);
+	}
+
+	/**
+	 * Percentile summary
+	 */
+	static public class Summary
+	{
+		/**
+		 * Number of frames summarized
+		 */
+		public final int count;
+
+		/**
+		 * Total number of frames recorded
+		 */
+		public final long total;
+
+		/**
+		 * Rendering backend of last frame
+		 */
+		@Nullable
+		public final TreebolicThread.Backend backend;
+
+		/**
+		 * Percentiles in nanoseconds indexed by phase ordinal, then p50 p90 p99
+		 */
+		@NonNull
+		private final long[][] percentiles;
+
+		Summary(final int count, final long total, @Nullable final TreebolicThread.Backend backend, @NonNull final long[][] percentiles)
+		{
+			this.count = count;
+			this.total = total;
+			this.backend = backend;
+			this.percentiles = percentiles;
+		}
+
+		/**
+		 * Median
+		 *
+		 * @param phase phase
+		 * @return p50 in nanoseconds
+		 */
+		public long p50(@NonNull final Phase phase)
+		{
+			return this.percentiles[phase.ordinal()][0];
+		}
+
+		/**
+		 * 90th percentile
+		 *
+		 * @param phase phase
+		 * @return p90 in nanoseconds
+		 */
+		public long p90(@NonNull final Phase phase)
+		{
+			return this.percentiles[phase.ordinal()][1];
+		}
+
+		/**
+		 * 99th percentile
+		 *
+		 * @param phase phase
+		 * @return p99 in nanoseconds
+		 */
+		public long p99(@NonNull final Phase phase)
+		{
+			return this.percentiles[phase.ordinal()][2];
+		}
+
+		@NonNull
+		@Override
+		public String toString()
+		{
+			@NonNull final StringBuilder sb = new StringBuilder();
+			sb.append("frames=").append(this.count).append('/').append(this.total).append(" backend=").append(this.backend);
+			for (final Phase phase : Phase.values())
+			{
+				sb.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append("(us)=") //
+						.append(p50(phase) / 1000).append('/') //
+						.append(p90(phase) / 1000).append('/') //
+						.append(p99(phase) / 1000);
+			}
+			return sb.toString();
+		}
+	}
+
+	// M E M B E R S
+
+	/**
+	 * Ring buffer capacity
+	 */
+	private final int capacity;
+
+	/**
+	 * Samples indexed by phase ordinal, then slot
+	 */
+	@NonNull
+	private final long[][] samples;
+
+	/**
+	 * Number of frames written, the next slot is written % capacity
+	 */
+	@NonNull
+	private final AtomicLong written = new AtomicLong(0);
+
+	/**
+	 * Rendering backend of last frame
+	 */
+	@Nullable
+	private volatile TreebolicThread.Backend backend;
+
+	/**
+	 * Listener
+	 */
+	@Nullable
+	private volatile Listener listener;
+
+	/**
+	 * Constructor
+	 */
+	public FrameMetrics()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity0 ring buffer capacity (frames)
+	 */
+	public FrameMetrics(final int capacity0)
+	{
+		this.capacity = capacity0;
+		this.samples = new long[Phase.values().length][capacity0];
+	}
+
+	/**
+	 * Set listener
+	 *
+	 * @param listener0 listener, null to remove
+	 */
+	public void setListener(@Nullable final Listener listener0)
+	{
+		this.listener = listener0;
+	}
+
+	/**
+	 * Record frame (render thread only)
+	 *
+	 * @param lockNanos  lock duration in nanoseconds
+	 * @param paintNanos paint duration in nanoseconds
+	 * @param postNanos  unlock-and-post duration in nanoseconds
+	 * @param idleNanos  idle duration before this frame in nanoseconds
+	 * @param backend0   rendering backend in use
+	 */
+	void record(final long lockNanos, final long paintNanos, final long postNanos, final long idleNanos, @NonNull final TreebolicThread.Backend backend0)
+	{
+		final long n = this.written.get();
+		final int slot = (int) (n % this.capacity);
+		this.samples[Phase.LOCK.ordinal()][slot] = lockNanos;
+		this.samples[Phase.PAINT.ordinal()][slot] = paintNanos;
+		this.samples[Phase.POST.ordinal()][slot] = postNanos;
+		this.samples[Phase.IDLE.ordinal()][slot] = idleNanos;
+		this.backend = backend0;
+		this.written.set(n + 1);
+
+		final Listener listener0 = this.listener;
+		if (listener0 != null)
+		{
+			listener0.onFrame(lockNanos, paintNanos, postNanos, idleNanos, backend0);
+		}
+	}
+
+	/**
+	 * Get number of frames recorded
+	 *
+	 * @return number of frames recorded
+	 */
+	public long getFrameCount()
+	{
+		return this.written.get();
+	}
+
+	/**
+	 * Summarize frames currently in the ring buffer
+	 *
+	 * @return percentile summary
+	 */
+	@NonNull
+	public Summary summarize()
+	{
+		final long total = this.written.get();
+		final int count = (int) Math.min(total, this.capacity);
+		final Phase[] phases = Phase.values();
+		final long[][] percentiles = new long[phases.length][3];
+		if (count > 0)
+		{
+			for (final Phase phase : phases)
+			{
+				final long[] sorted = Arrays.copyOf(this.samples[phase.ordinal()], count);
+				Arrays.sort(sorted);
+				percentiles[phase.ordinal()][0] = percentile(sorted, 50);
+				percentiles[phase.ordinal()][1] = percentile(sorted, 90);
+				percentiles[phase.ordinal()][2] = percentile(sorted, 99);
+			}
+		}
+		return new Summary(count, total, this.backend, percentiles);
+	}
+
+	/**
+	 * Reset
+	 */
+	public void reset()
+	{
+		this.written.set(0);
+	}
+
+	/**
+	 * Nearest-rank percentile
+	 *
+	 * @param sorted  sorted values
+	 * @param percent percent
+	 * @return percentile value
+	 */
+	static private long percentile(@NonNull final long[] sorted, final int percent)
+	{
+		final int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
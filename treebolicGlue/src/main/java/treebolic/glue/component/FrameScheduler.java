@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue.component;
+
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Frame scheduler
+ * Requests made during one frame interval are coalesced into a single frame callback.
+ *
+ * @author Bernard Bou
+ */
+public class FrameScheduler
+{
+	static private final boolean LOG = false;
+	static private final String TAG = "FrameScheduler";
+
+	/**
+	 * Frame interval in timer mode
+	 */
+	static public final long TIMER_FRAME_INTERVAL_MS = 16;
+
+	/**
+	 * Pacing mode
+	 */
+	public enum Mode
+	{
+		/**
+		 * Paced by Choreographer vsync callbacks
+		 */
+		CHOREOGRAPHER,
+		/**
+		 * Paced by timer (no looper needed, used by unit tests)
+		 */
+		TIMER
+	}
+
+	/**
+	 * Frame callback
+	 */
+	public interface Callback
+	{
+		/**
+		 * Frame is due
+		 *
+		 * @param frameTimeNanos frame time in nanoseconds
+		 */
+		void onFrame(long frameTimeNanos);
+	}
+
+	// M E M B E R S
+
+	/**
+	 * Effective mode
+	 */
+	@NonNull
+	private final Mode mode;
+
+	/**
+	 * Callback
+	 */
+	@NonNull
+	private final Callback callback;
+
+	/**
+	 * Whether a frame has been requested and not yet dispatched
+	 */
+	@NonNull
+	private final AtomicBoolean pending = new AtomicBoolean(false);
+
+	/**
+	 * Choreographer (choreographer mode)
+	 */
+	@Nullable
+	private final Choreographer choreographer;
+
+	/**
+	 * Choreographer frame callback (choreographer mode)
+	 */
+	@NonNull
+	private final Choreographer.FrameCallback frameCallback = this::dispatch;
+
+	/**
+	 * Timer (timer mode)
+	 */
+	@Nullable
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * Whether this scheduler has been released
+	 */
+	private volatile boolean released = false;
+
+	/**
+	 * Constructor
+	 * Choreographer mode requires a looper thread, it falls back to timer mode otherwise.
+	 *
+	 * @param mode0     pacing mode
+	 * @param callback0 callback
+	 */
+	public FrameScheduler(@NonNull final Mode mode0, @NonNull final Callback callback0)
+	{
+		this.callback = callback0;
+		if (mode0 == Mode.CHOREOGRAPHER && Looper.myLooper() != null)
+		{
+			this.mode = Mode.CHOREOGRAPHER;
+			this.choreographer = Choreographer.getInstance();
+			this.timer = null;
+		}
+		else
+		{
+			this.mode = Mode.TIMER;
+			this.choreographer = null;
+			this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Get effective mode
+	 *
+	 * @return effective mode
+	 */
+	@NonNull
+	public Mode getMode()
+	{
+		return this.mode;
+	}
+
+	/**
+	 * Request frame. Requests made before the frame is due are coalesced.
+	 */
+	public void request()
+	{
+		if (this.released)
+		{
+			return;
+		}
+		if (this.pending.compareAndSet(false, true))
+		{
+			if (this.choreographer != null)
+			{
+				this.choreographer.postFrameCallback(this.frameCallback);
+			}
+			else
+			{
+				assert this.timer != null;
+				this.timer.schedule(() -> dispatch(System.nanoTime()), TIMER_FRAME_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			}
+		}
+		else if (LOG)
+		{
+			Log.d(TAG, "request coalesced");
+		}
+	}
+
+	/**
+	 * Cancel pending request if any
+	 */
+	public void cancel()
+	{
+		if (this.pending.getAndSet(false) && this.choreographer != null)
+		{
+			this.choreographer.removeFrameCallback(this.frameCallback);
+		}
+	}
+
+	/**
+	 * Release this scheduler, it ignores requests afterwards
+	 */
+	public void release()
+	{
+		this.released = true;
+		cancel();
+		if (this.timer != null)
+		{
+			this.timer.shutdownNow();
+		}
+	}
+
+	/**
+	 * Dispatch frame
+	 *
+	 * @param frameTimeNanos frame time in nanoseconds
+	 */
+	private void dispatch(final long frameTimeNanos)
+	{
+		// cleared by cancel in the meantime
+		if (!this.pending.getAndSet(false) || this.released)
+		{
+			return;
+		}
+		if (LOG)
+		{
+			Log.d(TAG, "frame " + frameTimeNanos);
+		}
+		this.callback.onFrame(frameTimeNanos);
+	}
+}
@@ -5,26 +5,33 @@
 package treebolic.glue.component;
 
 import android.content.Context;
-import android.graphics.PointF;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
 
 import org.treebolic.glue.R;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import treebolic.glue.BitmapLayer;
 import treebolic.glue.EventListener;
 import treebolic.glue.Graphics;
+import treebolic.glue.GraphicsCache;
+import treebolic.glue.LabelCache;
+import treebolic.glue.LevelOfDetail;
+import treebolic.glue.Rectangle2D;
+import treebolic.glue.TileCache;
 
 /**
  * Surface treebolic glue to serve as base for view
@@ -43,6 +50,56 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 		 */
 	public static final float FIND_DISTANCE_EPSILON_FACTOR = 2.5F;
 
+	/**
+	 * Default delay (ms) after scale end before dragging is allowed again
+	 */
+	public static final long DEFAULT_SCALE_COOLDOWN = 500;
+
+	/**
+	 * Scale gesture mode
+	 */
+	public enum ScaleMode
+	{
+		/**
+		 * Fire accumulated scale when gesture ends
+		 */
+		END,
+		/**
+		 * Show scaled snapshot of scene taken when gesture begins, fire accumulated scale when gesture ends
+		 */
+		PREVIEW,
+		/**
+		 * Fire scale change once per frame during gesture
+		 */
+		LIVE
+	}
+
+	/**
+	 * Default fling decay time constant (s): velocity is divided by e every time constant
+	 */
+	public static final float DEFAULT_FLING_TIME_CONSTANT = 0.325F;
+
+	/**
+	 * Capacity of drag samples buffer
+	 */
+	public static final int MAX_DRAG_SAMPLES = 64;
+
+	/**
+	 * Listener to drag samples, including historical ones, delivered once per frame
+	 */
+	public interface DragSamplesListener
+	{
+		/**
+		 * Drag samples since last dispatch, oldest first. Arrays are reused: they are only valid during the call.
+		 *
+		 * @param xs    x coordinates
+		 * @param ys    y coordinates
+		 * @param times event times (ms, uptime base)
+		 * @param count number of samples
+		 */
+		void onDragSamples(@NonNull float[] xs, @NonNull float[] ys, @NonNull long[] times, int count);
+	}
+
 	/**
 	 * The thread that actually draws the animation
 	 */
@@ -50,6 +107,80 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	@Nullable
 	private TreebolicThread thread;
 
+	/**
+	 * Frame scheduler that paces repaint requests to the display
+	 */
+	@NonNull
+	private FrameScheduler frameScheduler;
+
+	/**
+	 * Requested rendering backend (software unless opted into hardware or auto)
+	 */
+	@NonNull
+	private TreebolicThread.Backend backend = TreebolicThread.Backend.SOFTWARE;
+
+	/**
+	 * Frame metrics, null if not collected
+	 */
+	@Nullable
+	private FrameMetrics frameMetrics;
+
+	/**
+	 * Label cache, null if labels are drawn as text
+	 */
+	@Nullable
+	private LabelCache labelCache;
+
+	/**
+	 * Level of detail for small labels and images
+	 */
+	@NonNull
+	private LevelOfDetail levelOfDetail = LevelOfDetail.FULL;
+
+	/**
+	 * Text size (pixels) below which labels are subject to level of detail
+	 */
+	private float lodTextThreshold = Graphics.DEFAULT_LOD_TEXT_THRESHOLD;
+
+	/**
+	 * Image size (pixels) below which images are subject to level of detail
+	 */
+	private int lodImageThreshold = Graphics.DEFAULT_LOD_IMAGE_THRESHOLD;
+
+	/**
+	 * Whether primitives outside the visible surface are culled
+	 */
+	private boolean culling = false;
+
+	/**
+	 * Graphics cache strategy
+	 */
+	@NonNull
+	private volatile GraphicsCache.Strategy cacheStrategy = GraphicsCache.Strategy.PICTURE;
+
+	/**
+	 * Bitmap layers used by BITMAP cache strategy, one per cache layer, persist across frames
+	 */
+	@NonNull
+	private final BitmapLayer[] cacheLayers = new BitmapLayer[GraphicsCache.Layer.values().length];
+
+	/**
+	 * Tile cache used by TILED cache strategy, persists across frames
+	 */
+	@NonNull
+	private final TileCache tileCache = new TileCache(GraphicsCache.Layer.values().length);
+
+	/**
+	 * Painters of cache layers the engine does not draw
+	 */
+	@NonNull
+	private final AtomicReferenceArray<GraphicsCache.LayerPainter> layerPainters = new AtomicReferenceArray<>(GraphicsCache.Layer.values().length);
+
+	/**
+	 * Whether scene is recorded off the render thread
+	 */
+	private boolean asyncRecording = false;
+
 	/**
 	 * Touch, gesture, hover event listener
 	 */
@@ -69,21 +200,196 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	@NonNull
 	private final ScaleGestureDetector scaleDetector;
 
+	/**
+	 * Frame scheduler that coalesces drag moves
+	 */
+	@NonNull
+	private final FrameScheduler dragScheduler;
+
+	/**
+	 * Whether drag moves are coalesced into one dispatch per frame
+	 */
+	private boolean dragCoalescing = true;
+
+	/**
+	 * Whether a drag move is pending dispatch
+	 */
+	private boolean dragPending = false;
+
+	/**
+	 * Latest drag position
+	 */
+	private int dragX;
+
+	private int dragY;
+
+	/**
+	 * Drag samples listener, null if samples are not collected
+	 */
+	@Nullable
+	private DragSamplesListener dragSamplesListener;
+
+	/**
+	 * Drag samples since last dispatch
+	 */
+	@NonNull
+	private final float[] dragSamplesX = new float[MAX_DRAG_SAMPLES];
+
+	@NonNull
+	private final float[] dragSamplesY = new float[MAX_DRAG_SAMPLES];
+
+	@NonNull
+	private final long[] dragSamplesTime = new long[MAX_DRAG_SAMPLES];
+
+	private int dragSamplesCount = 0;
+
+	/**
+	 * Velocity tracker, obtained on down, recycled on up
+	 */
+	@Nullable
+	private VelocityTracker velocityTracker;
+
+	/**
+	 * Frame scheduler that drives fling decay
+	 */
+	@NonNull
+	private final FrameScheduler flingScheduler;
+
+	/**
+	 * Whether release velocity starts a fling
+	 */
+	private boolean flingEnabled = true;
+
+	/**
+	 * Fling decay time constant (s)
+	 */
+	private float flingTimeConstant = DEFAULT_FLING_TIME_CONSTANT;
+
+	/**
+	 * Velocity (px/s) above which release starts a fling, below which fling stops
+	 */
+	private final int minFlingVelocity;
+
+	/**
+	 * Velocity (px/s) fling is capped to
+	 */
+	private final int maxFlingVelocity;
+
+	/**
+	 * Whether fling is running
+	 */
+	private boolean flinging = false;
+
+	/**
+	 * Fling position (px)
+	 */
+	private float flingX;
+
+	private float flingY;
+
+	/**
+	 * Fling velocity (px/s)
+	 */
+	private float flingVelocityX;
+
+	private float flingVelocityY;
+
+	/**
+	 * Time of last fling step (ns)
+	 */
+	private long flingTime;
+
 	/**
 	 * Whether in the middle of scaling op
 	 */
 	private boolean isScaling = false;
 
+	/**
+	 * Delay (ms) after scale end before dragging is allowed again
+	 */
+	private long scaleCooldown = DEFAULT_SCALE_COOLDOWN;
+
+	/**
+	 * Ends scaling op once cooldown has elapsed, posted to the UI thread
+	 */
+	@NonNull
+	private final Runnable scaleCooldownEnd = () -> this.isScaling = false;
+
+	/**
+	 * UI thread handler, runs scale cooldown whether or not view is attached
+	 */
+	@NonNull
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
 	/**
 	 * Accumulated scale factor
 	 */
 	private float scaleFactor = 1F;
 
+	/**
+	 * Scale factor already fired during gesture (LIVE mode)
+	 */
+	private float firedScaleFactor = 1F;
+
+	/**
+	 * Scale focus
+	 */
+	private float scaleFocusX;
+
+	private float scaleFocusY;
+
+	/**
+	 * Scale gesture mode
+	 */
+	@NonNull
+	private ScaleMode scaleMode = ScaleMode.END;
+
+	/**
+	 * Frame scheduler that paces scale changes during gesture
+	 */
+	@NonNull
+	private final FrameScheduler scaleScheduler;
+
 	/**
 	 * Whether to fire hover events
 	 */
 	private boolean fireHover;
 
+	/**
+	 * Frame scheduler that coalesces hover events
+	 */
+	@NonNull
+	private final FrameScheduler hoverScheduler;
+
+	/**
+	 * Whether a hover event is pending dispatch
+	 */
+	private boolean hoverPending = false;
+
+	/**
+	 * Latest hover position
+	 */
+	private float hoverX;
+
+	private float hoverY;
+
+	/**
+	 * Last dispatched hover position, NaN if none
+	 */
+	private float hoverDispatchedX = Float.NaN;
+
+	private float hoverDispatchedY = Float.NaN;
+
+	/**
+	 * Dispatched hover event count
+	 */
+	private long hoverDispatched = 0;
+
+	/**
+	 * Suppressed (coalesced or within epsilon of last dispatch) hover event count
+	 */
+	private long hoverSuppressed = 0;
+
 	/*
 	 * Activity
 	 */
@@ -92,22 +398,148 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	/**
 	 * Scale detector that keeps track of active pointers
 	 */
-	static private class XScaleGestureDetector extends ScaleGestureDetector
+	static class XScaleGestureDetector extends ScaleGestureDetector
 	{
+		/**
+		 * Maximum number of tracked pointers
+		 */
+		static private final int MAX_POINTERS = 10;
+
+		/**
+		 * Active pointer ids, xs and ys, in parallel
+		 */
+		@NonNull
+		private final int[] pointerIds = new int[MAX_POINTERS];
+
 		@NonNull
-		private final SparseArray<PointF> activePointers;
+		private final float[] pointerXs = new float[MAX_POINTERS];
+
+		@NonNull
+		private final float[] pointerYs = new float[MAX_POINTERS];
+
+		/**
+		 * Number of active pointers
+		 */
+		private int pointerCount = 0;
 
 		@SuppressWarnings("WeakerAccess")
 		public XScaleGestureDetector(final Context context, final OnScaleGestureListener listener0)
 		{
 			super(context, listener0);
-			this.activePointers = new SparseArray<>();
 		}
 
 		@SuppressWarnings("WeakerAccess")
 		public void reset()
 		{
-			this.activePointers.clear();
+			this.pointerCount = 0;
+		}
+
+		/**
+		 * Find pointer slot
+		 *
+		 * @param pointerId pointer id
+		 * @return slot index, -1 if pointer is not tracked
+		 */
+		private int indexOf(final int pointerId)
+		{
+			for (int i = 0; i < this.pointerCount; i++)
+			{
+				if (this.pointerIds[i] == pointerId)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Track pointer, pointers beyond capacity are ignored
+		 *
+		 * @param pointerId pointer id
+		 * @param x         x
+		 * @param y         y
+		 */
+		private void put(final int pointerId, final float x, final float y)
+		{
+			int i = indexOf(pointerId);
+			if (i == -1)
+			{
+				if (this.pointerCount == MAX_POINTERS)
+				{
+					return;
+				}
+				i = this.pointerCount++;
+				this.pointerIds[i] = pointerId;
+			}
+			this.pointerXs[i] = x;
+			this.pointerYs[i] = y;
+		}
+
+		/**
+		 * Stop tracking pointer, last slot fills the gap
+		 *
+		 * @param pointerId pointer id
+		 */
+		private void remove(final int pointerId)
+		{
+			final int i = indexOf(pointerId);
+			if (i != -1)
+			{
+				final int last = --this.pointerCount;
+				this.pointerIds[i] = this.pointerIds[last];
+				this.pointerXs[i] = this.pointerXs[last];
+				this.pointerYs[i] = this.pointerYs[last];
+			}
+		}
+
+		/**
+		 * Find leftmost active pointer
+		 *
+		 * @return slot index, -1 if none
+		 */
+		@SuppressWarnings("WeakerAccess")
+		public int leftmost()
+		{
+			int left = -1;
+			for (int i = 0; i < this.pointerCount; i++)
+			{
+				if (left == -1 || this.pointerXs[i] < this.pointerXs[left])
+				{
+					left = i;
+				}
+			}
+			return left;
+		}
+
+		/**
+		 * Find rightmost active pointer
+		 *
+		 * @return slot index, -1 if none
+		 */
+		@SuppressWarnings("WeakerAccess")
+		public int rightmost()
+		{
+			int right = -1;
+			for (int i = 0; i < this.pointerCount; i++)
+			{
+				if (right == -1 || this.pointerXs[i] > this.pointerXs[right])
+				{
+					right = i;
+				}
+			}
+			return right;
+		}
+
+		/**
+		 * Get pointer y
+		 *
+		 * @param i slot index
+		 * @return y
+		 */
+		@SuppressWarnings("WeakerAccess")
+		public float getPointerY(final int i)
+		{
+			return this.pointerYs[i];
 		}
 
 		@Override
@@ -131,11 +563,7 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 				case MotionEvent.ACTION_DOWN:
 				case MotionEvent.ACTION_POINTER_DOWN:
 				{
-
-					@NonNull final PointF f = new PointF();
-					f.x = event.getX(pointerIndex);
-					f.y = event.getY(pointerIndex);
-					this.activePointers.put(pointerId, f);
+					put(pointerId, event.getX(pointerIndex), event.getY(pointerIndex));
 					break;
 				}
 
@@ -144,28 +572,40 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 				{
 					for (int size = event.getPointerCount(), i = 0; i < size; i++)
 					{
-						final PointF point = this.activePointers.get(event.getPointerId(i));
-						if (point != null)
+						final int slot = indexOf(event.getPointerId(i));
+						if (slot != -1)
 						{
-							point.x = event.getX(i);
-							point.y = event.getY(i);
+							this.pointerXs[slot] = event.getX(i);
+							this.pointerYs[slot] = event.getY(i);
 						}
 					}
 					break;
 				}
-				case MotionEvent.ACTION_UP:
+				default:
+					break;
+			}
+
+			// super (scale end, if any, still sees the lifted pointer)
+			final boolean result = super.onTouchEvent(event);
+
+			// lifted pointers
+			switch (maskedAction)
+			{
 				case MotionEvent.ACTION_POINTER_UP:
+				{
+					remove(pointerId);
+					break;
+				}
+				case MotionEvent.ACTION_UP:
 				case MotionEvent.ACTION_CANCEL:
 				{
-					// this.activePointers.remove(pointerId);
+					reset();
 					break;
 				}
 				default:
 					break;
 			}
-
-			// super
-			return super.onTouchEvent(event);
+			return result;
 		}
 	}
 
@@ -210,6 +650,25 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 
 		// create thread only (thread is started in surfaceCreated())
 		this.thread = new TreebolicThread(this, holder);
+		this.thread.setBackend(this.backend);
+
+		// frame scheduler
+		this.frameScheduler = new FrameScheduler(FrameScheduler.Mode.CHOREOGRAPHER, this::onFrame);
+		this.dragScheduler = new FrameScheduler(FrameScheduler.Mode.CHOREOGRAPHER, this::onDragFrame);
+		this.flingScheduler = new FrameScheduler(FrameScheduler.Mode.CHOREOGRAPHER, this::onFlingFrame);
+		this.scaleScheduler = new FrameScheduler(FrameScheduler.Mode.CHOREOGRAPHER, this::onScaleFrame);
+		this.hoverScheduler = new FrameScheduler(FrameScheduler.Mode.CHOREOGRAPHER, this::onHoverFrame);
+
+		// fling velocities
+		final ViewConfiguration configuration = ViewConfiguration.get(activity);
+		this.minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+		this.maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+
+		// cache layers
+		for (int i = 0; i < this.cacheLayers.length; i++)
+		{
+			this.cacheLayers[i] = new BitmapLayer();
+		}
 
 		// listener
 		this.listener = null;
@@ -295,10 +754,16 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 			{
 				// scaleFactor change since previous event
 				Surface.this.scaleFactor *= detector.getScaleFactor();
+				Surface.this.scaleFocusX = detector.getFocusX();
+				Surface.this.scaleFocusY = detector.getFocusY();
 				if (LOG)
 				{
 					Log.d(TAG, "scaleFactor " + Surface.this.scaleFactor);
 				}
+				if (Surface.this.scaleMode != ScaleMode.END)
+				{
+					Surface.this.scaleScheduler.request();
+				}
 				return true;
 			}
 
@@ -307,6 +772,11 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 			{
 				Surface.this.isScaling = true;
 				Surface.this.scaleFactor = 1F;
+				Surface.this.firedScaleFactor = 1F;
+				if (Surface.this.scaleMode == ScaleMode.PREVIEW && Surface.this.thread != null)
+				{
+					Surface.this.thread.beginPreview();
+				}
 				if (LOG)
 				{
 					Log.d(TAG, "scale begin");
@@ -317,56 +787,24 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 			@Override
 			public void onScaleEnd(@NonNull final ScaleGestureDetector detector)
 			{
-				// accumulated scale
-				final float scale = -Surface.this.scaleFactor;
-
-				// zoom or scale
-				final XScaleGestureDetector xdetector = (XScaleGestureDetector) detector;
-				@Nullable PointF left = null;
-				@Nullable PointF right = null;
-				for (int i = 0; i < xdetector.activePointers.size(); i++)
+				// pending frame
+				Surface.this.scaleScheduler.cancel();
+				if (Surface.this.scaleMode == ScaleMode.PREVIEW && Surface.this.thread != null)
 				{
-					final int key = xdetector.activePointers.keyAt(i);
+					Surface.this.thread.endPreview();
+					recomposite();
+				}
 
-					// get the object by the key
-					final PointF p = xdetector.activePointers.get(key);
-					if (left == null || p.x < left.x)
-					{
-						left = p;
-					}
-					if (right == null || p.x > right.x)
-					{
-						right = p;
-					}
-				}
-				boolean zoom = left != null && /* right != null && */ left.y < right.y;
-
-				// fire event
-				assert Surface.this.listener != null;
-				if (zoom)
-				{
-					Surface.this.listener.onZoom(scale, 0, 0);
-					if (LOG)
-					{
-						Log.d(TAG, "zoom: " + scale);
-					}
-				}
-				else
-				{
-					Surface.this.listener.onScale(0, scale, scale);
-					if (LOG)
-					{
-						Log.d(TAG, "scale: " + scale);
-					}
-				}
+				// accumulated scale, not yet fired
+				fireScale(Surface.this.scaleFactor / Surface.this.firedScaleFactor);
 
 				// reset
 				Surface.this.scaleFactor = 1F;
-				xdetector.reset();
+				Surface.this.firedScaleFactor = 1F;
 
 				// wait for delay until dragging is allowed
-				final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor();
-				exec.schedule((Runnable) () -> Surface.this.isScaling = false, 500, TimeUnit.MILLISECONDS);
+				Surface.this.handler.removeCallbacks(Surface.this.scaleCooldownEnd);
+				Surface.this.handler.postDelayed(Surface.this.scaleCooldownEnd, Surface.this.scaleCooldown);
 			}
 		});
 
@@ -399,6 +837,12 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 				Log.d(TAG, "thread created");
 			}
 			this.thread = new TreebolicThread(this, getHolder());
+			this.thread.setBackend(this.backend);
+			this.thread.setMetrics(this.frameMetrics);
+			this.thread.setLabelCache(this.labelCache);
+			this.thread.setCulling(this.culling);
+			this.thread.setAsyncRecording(this.asyncRecording);
+			this.thread.setLevelOfDetail(this.levelOfDetail, this.lodTextThreshold, this.lodImageThreshold);
 		}
 
 		// do not terminate
@@ -415,6 +859,328 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 		}
 	}
 
+	// B A C K E N D
+
+	/**
+	 * Set rendering backend (default software), takes effect next time the surface is created
+	 *
+	 * @param backend0 rendering backend
+	 */
+	@SuppressWarnings("unused")
+	public void setRenderBackend(@NonNull final TreebolicThread.Backend backend0)
+	{
+		this.backend = backend0;
+		if (this.thread != null && this.thread.getState() == Thread.State.NEW)
+		{
+			this.thread.setBackend(backend0);
+		}
+	}
+
+	/**
+	 * Get rendering backend in use
+	 *
+	 * @return rendering backend in use (SOFTWARE or HARDWARE), requested backend if not yet resolved
+	 */
+	@NonNull
+	@SuppressWarnings("unused")
+	public TreebolicThread.Backend getRenderBackend()
+	{
+		if (this.thread != null && this.thread.getState() != Thread.State.NEW)
+		{
+			return this.thread.getActiveBackend();
+		}
+		return this.backend;
+	}
+
+	// L A B E L S
+
+	/**
+	 * Set label cache (opt-in), labels are then rasterized once and blitted
+	 *
+	 * @param labelCache0 label cache, null to draw labels as text
+	 */
+	@SuppressWarnings("unused")
+	public void setLabelCache(@Nullable final LabelCache labelCache0)
+	{
+		this.labelCache = labelCache0;
+		if (this.thread != null)
+		{
+			this.thread.setLabelCache(labelCache0);
+		}
+	}
+
+	// L E V E L   O F   D E T A I L
+
+	/**
+	 * Set level of detail for labels and images below size thresholds, selectable at runtime
+	 *
+	 * @param levelOfDetail0 level of detail
+	 */
+	@SuppressWarnings("unused")
+	public void setLevelOfDetail(@NonNull final LevelOfDetail levelOfDetail0)
+	{
+		setLevelOfDetail(levelOfDetail0, this.lodTextThreshold, this.lodImageThreshold);
+	}
+
+	/**
+	 * Set level of detail for labels and images below size thresholds, selectable at runtime
+	 *
+	 * @param levelOfDetail0 level of detail
+	 * @param textThreshold  text size (pixels) below which labels are subject to level of detail
+	 * @param imageThreshold image size (pixels) below which images are subject to level of detail
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void setLevelOfDetail(@NonNull final LevelOfDetail levelOfDetail0, final float textThreshold, final int imageThreshold)
+	{
+		this.levelOfDetail = levelOfDetail0;
+		this.lodTextThreshold = textThreshold;
+		this.lodImageThreshold = imageThreshold;
+		if (this.thread != null)
+		{
+			this.thread.setLevelOfDetail(levelOfDetail0, textThreshold, imageThreshold);
+		}
+	}
+
+	// C U L L I N G
+
+	/**
+	 * Set whether primitives outside the visible surface are culled (opt-in)
+	 *
+	 * @param flag whether to cull
+	 */
+	@SuppressWarnings("unused")
+	public void setCulling(final boolean flag)
+	{
+		this.culling = flag;
+		if (this.thread != null)
+		{
+			this.thread.setCulling(flag);
+		}
+	}
+
+	/**
+	 * Get number of primitives culled in last frame
+	 *
+	 * @return number of primitives culled in last frame, 0 if culling is off
+	 */
+	@SuppressWarnings("unused")
+	public int getCulledCount()
+	{
+		return this.thread == null ? 0 : this.thread.getFrameCulled();
+	}
+
+	/**
+	 * Get number of primitives tested and drawn in last frame
+	 *
+	 * @return number of primitives drawn in last frame, 0 if culling is off
+	 */
+	@SuppressWarnings("unused")
+	public int getDrawnCount()
+	{
+		return this.thread == null ? 0 : this.thread.getFrameDrawn();
+	}
+
+	// C A C H E
+
+	/**
+	 * Set graphics cache strategy
+	 *
+	 * @param strategy cache strategy
+	 */
+	@SuppressWarnings("unused")
+	public void setCacheStrategy(@NonNull final GraphicsCache.Strategy strategy)
+	{
+		this.cacheStrategy = strategy;
+		invalidateCache();
+	}
+
+	/**
+	 * Get graphics cache strategy
+	 *
+	 * @return cache strategy
+	 */
+	@NonNull
+	public GraphicsCache.Strategy getCacheStrategy()
+	{
+		return this.cacheStrategy;
+	}
+
+	/**
+	 * Get bitmap layer used by BITMAP cache strategy
+	 *
+	 * @param layer cache layer
+	 * @return bitmap layer
+	 */
+	@NonNull
+	public BitmapLayer getCacheLayer(@NonNull final GraphicsCache.Layer layer)
+	{
+		return this.cacheLayers[layer.ordinal()];
+	}
+
+	/**
+	 * Get tile cache used by TILED cache strategy
+	 *
+	 * @return tile cache
+	 */
+	@NonNull
+	public TileCache getTileCache()
+	{
+		return this.tileCache;
+	}
+
+	/**
+	 * Notify that cached content has moved on surface and schedule a frame, only newly exposed tiles are rendered (TILED cache strategy)
+	 *
+	 * @param dx x shift of content on surface
+	 * @param dy y shift of content on surface
+	 */
+	@SuppressWarnings("unused")
+	public void panCache(final int dx, final int dy)
+	{
+		this.tileCache.pan(dx, dy);
+		recomposite();
+	}
+
+	/**
+	 * Set painter of cache layer the engine does not draw
+	 *
+	 * @param layer   cache layer
+	 * @param painter layer painter, null if none
+	 */
+	@SuppressWarnings("unused")
+	public void setLayerPainter(@NonNull final GraphicsCache.Layer layer, @Nullable final GraphicsCache.LayerPainter painter)
+	{
+		this.layerPainters.set(layer.ordinal(), painter);
+		invalidateLayer(layer);
+	}
+
+	/**
+	 * Get painter of cache layer
+	 *
+	 * @param layer cache layer
+	 * @return layer painter, null if none
+	 */
+	@Nullable
+	public GraphicsCache.LayerPainter getLayerPainter(@NonNull final GraphicsCache.Layer layer)
+	{
+		return this.layerPainters.get(layer.ordinal());
+	}
+
+	/**
+	 * Invalidate cached scene so that all layers are rendered again on next frame
+	 */
+	public void invalidateCache()
+	{
+		for (final BitmapLayer layer : this.cacheLayers)
+		{
+			layer.invalidate();
+		}
+		this.tileCache.invalidate();
+	}
+
+	/**
+	 * Invalidate one cached layer and schedule a frame, other layers are composited as cached
+	 *
+	 * @param layer cache layer
+	 */
+	public void invalidateLayer(@NonNull final GraphicsCache.Layer layer)
+	{
+		this.cacheLayers[layer.ordinal()].invalidate();
+		this.tileCache.invalidate(layer.ordinal());
+		recomposite();
+	}
+
+	/**
+	 * Redraw frame from cached scene, without invalidating it
+	 */
+	@SuppressWarnings("unused")
+	public void recomposite()
+	{
+		runThread();
+		assert this.thread != null;
+		this.thread.invalidate();
+		this.frameScheduler.request();
+	}
+
+	// A S Y N C   R E C O R D I N G
+
+	/**
+	 * Set whether scene is recorded by a worker thread while the render thread composites the last completed recording.
+	 * Interaction latency is then bounded by compositing, at the cost of showing the scene one recording late.
+	 * Recordings must not reference bitmaps the recorder draws to again, so BITMAP and TILED cache strategies fall back to PICTURE while recording.
+	 *
+	 * @param flag whether to record asynchronously
+	 */
+	@SuppressWarnings("unused")
+	public void setAsyncRecording(final boolean flag)
+	{
+		this.asyncRecording = flag;
+		if (this.thread != null)
+		{
+			this.thread.setAsyncRecording(flag);
+		}
+	}
+
+	// M E T R I C S
+
+	/**
+	 * Set frame metrics collector (opt-in)
+	 *
+	 * @param metrics frame metrics collector, null to disable collection
+	 */
+	@SuppressWarnings("unused")
+	public void setFrameMetrics(@Nullable final FrameMetrics metrics)
+	{
+		this.frameMetrics = metrics;
+		if (this.thread != null)
+		{
+			this.thread.setMetrics(metrics);
+		}
+	}
+
+	/**
+	 * Get frame metrics collector
+	 *
+	 * @return frame metrics collector, null if not collected
+	 */
+	@Nullable
+	@SuppressWarnings("unused")
+	public FrameMetrics getFrameMetrics()
+	{
+		return this.frameMetrics;
+	}
+
+	// F R A M E   S C H E D U L I N G
+
+	/**
+	 * Set frame scheduling mode
+	 *
+	 * @param mode frame scheduling mode
+	 */
+	@SuppressWarnings("unused")
+	public void setFrameSchedulerMode(@NonNull final FrameScheduler.Mode mode)
+	{
+		if (mode != this.frameScheduler.getMode())
+		{
+			this.frameScheduler.release();
+			this.frameScheduler = new FrameScheduler(mode, this::onFrame);
+		}
+	}
+
+	/**
+	 * Frame is due: wake up thread once for all repaint requests made since last frame
+	 *
+	 * @param frameTimeNanos frame time
+	 */
+	private void onFrame(@SuppressWarnings("unused") final long frameTimeNanos)
+	{
+		final TreebolicThread thread0 = this.thread;
+		if (thread0 != null)
+		{
+			thread0.unpause();
+		}
+	}
+
 	// S U R F A C E C A L L B A C K S
 
 	/*
@@ -444,6 +1210,7 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 		}
 
 		assert this.thread != null;
+		this.thread.invalidate();
 		this.thread.unpause();
 	}
 
@@ -459,10 +1226,27 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 			Log.d(TAG, "surface destroyed");
 		}
 
+		// drop pending frame, drag, fling, scale and hover
+		this.frameScheduler.cancel();
+		cancelDrag();
+		cancelFling();
+		this.scaleScheduler.cancel();
+		this.hoverScheduler.cancel();
+		this.hoverPending = false;
+		this.handler.removeCallbacks(this.scaleCooldownEnd);
+		this.isScaling = false;
+
 		// tell thread to shut down & wait for it to finish
 		assert this.thread != null;
 		this.thread.waitForTermination();
 		this.thread = null;
+
+		// thread is gone, nothing draws with cache layers
+		for (final BitmapLayer layer : this.cacheLayers)
+		{
+			layer.release();
+		}
+		this.tileCache.release();
 	}
 
 	// R E P A I N T
@@ -476,11 +1260,35 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 		}
 		runThread();
 		assert this.thread != null;
-		this.thread.unpause();
+		invalidateCache();
+		this.thread.invalidate();
+		this.frameScheduler.request();
+		if (LOG)
+		{
+			Log.d(TAG, "surface repaint scheduled");
+		}
+	}
+
+	/**
+	 * Repaint damaged region only. Regions accumulate until next frame, their union is redrawn.
+	 *
+	 * @param dirty damaged region
+	 */
+	@SuppressWarnings("unused")
+	public void repaint(@NonNull final Rectangle2D dirty)
+	{
 		if (LOG)
 		{
-			Log.d(TAG, "surface repainted");
+			Log.d(TAG, "surface repainting " + dirty);
 		}
+		runThread();
+		assert this.thread != null;
+		invalidateCache();
+		// local: repaint may be called concurrently, thread unions region under its own lock
+		final Rect dirtyRect = new Rect();
+		dirty.roundOut(dirtyRect);
+		this.thread.invalidate(dirtyRect);
+		this.frameScheduler.request();
 	}
 
 	// O T H E R
@@ -514,6 +1322,9 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	@Override
 	public boolean onTouchEvent(@NonNull final MotionEvent event)
 	{
+		// velocity tracking
+		trackVelocity(event);
+
 		// scaleFactor detection hook
 		this.scaleDetector.onTouchEvent(event);
 
@@ -530,12 +1341,14 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 				{
 					case MotionEvent.ACTION_DOWN:
 						// if(LOG) Log.d(TAG, "touch down");
+						cancelFling();
+						cancelDrag();
 						this.listener.onDown((int) event.getX(), (int) event.getY(), false);
 						break;
 
 					case MotionEvent.ACTION_MOVE:
 						// if(LOG) Log.d(TAG, "touch move");
-						this.listener.onDragged((int) event.getX(), (int) event.getY());
+						onMove(event);
 						break;
 
 					case MotionEvent.ACTION_UP:
@@ -543,7 +1356,11 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 					case MotionEvent.ACTION_CANCEL:
 						// if(LOG) Log.d(TAG, "touch cancel")
 						// if(LOG) Log.d(TAG, "touch up")
-						this.listener.onUp((int) event.getX(), (int) event.getY());
+						flushDrag();
+						if (action == MotionEvent.ACTION_CANCEL || !startFling(event.getX(), event.getY()))
+						{
+							this.listener.onUp((int) event.getX(), (int) event.getY());
+						}
 						break;
 
 					default:
@@ -556,6 +1373,375 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 		return super.onTouchEvent(event);
 	}
 
+	/**
+	 * Set delay after scale end before dragging is allowed again
+	 *
+	 * @param cooldown delay (ms)
+	 */
+	@SuppressWarnings("unused")
+	public void setScaleCooldown(final long cooldown)
+	{
+		this.scaleCooldown = cooldown;
+	}
+
+	// D R A G
+
+	/**
+	 * Set whether drag moves are coalesced into one dispatch per frame, carrying the latest position
+	 *
+	 * @param flag whether to coalesce
+	 */
+	@SuppressWarnings("unused")
+	public void setDragCoalescing(final boolean flag)
+	{
+		if (!flag)
+		{
+			flushDrag();
+		}
+		this.dragCoalescing = flag;
+	}
+
+	/**
+	 * Set drag samples listener, which receives historical samples, for velocity estimation
+	 *
+	 * @param listener0 drag samples listener, null if none
+	 */
+	@SuppressWarnings("unused")
+	public void setDragSamplesListener(@Nullable final DragSamplesListener listener0)
+	{
+		this.dragSamplesListener = listener0;
+		this.dragSamplesCount = 0;
+	}
+
+	/**
+	 * Handle move: record latest position and samples, dispatch on next frame
+	 *
+	 * @param event move event
+	 */
+	private void onMove(@NonNull final MotionEvent event)
+	{
+		if (this.dragSamplesListener != null)
+		{
+			for (int h = 0, n = event.getHistorySize(); h < n; h++)
+			{
+				addDragSample(event.getHistoricalX(h), event.getHistoricalY(h), event.getHistoricalEventTime(h));
+			}
+			addDragSample(event.getX(), event.getY(), event.getEventTime());
+		}
+		this.dragX = (int) event.getX();
+		this.dragY = (int) event.getY();
+		this.dragPending = true;
+		if (this.dragCoalescing)
+		{
+			this.dragScheduler.request();
+		}
+		else
+		{
+			dispatchDrag();
+		}
+	}
+
+	/**
+	 * Add drag sample, dropping the older half when buffer is full
+	 *
+	 * @param x    x
+	 * @param y    y
+	 * @param time event time
+	 */
+	private void addDragSample(final float x, final float y, final long time)
+	{
+		if (this.dragSamplesCount == MAX_DRAG_SAMPLES)
+		{
+			final int half = MAX_DRAG_SAMPLES / 2;
+			System.arraycopy(this.dragSamplesX, half, this.dragSamplesX, 0, MAX_DRAG_SAMPLES - half);
+			System.arraycopy(this.dragSamplesY, half, this.dragSamplesY, 0, MAX_DRAG_SAMPLES - half);
+			System.arraycopy(this.dragSamplesTime, half, this.dragSamplesTime, 0, MAX_DRAG_SAMPLES - half);
+			this.dragSamplesCount -= half;
+		}
+		this.dragSamplesX[this.dragSamplesCount] = x;
+		this.dragSamplesY[this.dragSamplesCount] = y;
+		this.dragSamplesTime[this.dragSamplesCount] = time;
+		this.dragSamplesCount++;
+	}
+
+	/**
+	 * Drag frame is due: dispatch moves made since last frame at once
+	 *
+	 * @param frameTimeNanos frame time
+	 */
+	private void onDragFrame(@SuppressWarnings("unused") final long frameTimeNanos)
+	{
+		dispatchDrag();
+	}
+
+	/**
+	 * Dispatch pending drag, if any
+	 */
+	private void dispatchDrag()
+	{
+		if (!this.dragPending)
+		{
+			return;
+		}
+		this.dragPending = false;
+		if (this.listener == null || this.isScaling)
+		{
+			this.dragSamplesCount = 0;
+			return;
+		}
+		final DragSamplesListener samplesListener = this.dragSamplesListener;
+		if (samplesListener != null && this.dragSamplesCount > 0)
+		{
+			samplesListener.onDragSamples(this.dragSamplesX, this.dragSamplesY, this.dragSamplesTime, this.dragSamplesCount);
+		}
+		this.dragSamplesCount = 0;
+		this.listener.onDragged(this.dragX, this.dragY);
+	}
+
+	/**
+	 * Dispatch pending drag now, before gesture ends
+	 */
+	private void flushDrag()
+	{
+		this.dragScheduler.cancel();
+		dispatchDrag();
+	}
+
+	/**
+	 * Drop pending drag, as a new gesture starts
+	 */
+	private void cancelDrag()
+	{
+		this.dragScheduler.cancel();
+		this.dragPending = false;
+		this.dragSamplesCount = 0;
+	}
+
+	// F L I N G
+
+	/**
+	 * Set whether release velocity starts a fling that keeps dragging with decaying velocity
+	 *
+	 * @param flag whether to fling
+	 */
+	@SuppressWarnings("unused")
+	public void setFling(final boolean flag)
+	{
+		this.flingEnabled = flag;
+		if (!flag)
+		{
+			cancelFling();
+		}
+	}
+
+	/**
+	 * Set fling decay time constant
+	 *
+	 * @param timeConstant time constant (s), velocity is divided by e every time constant
+	 */
+	@SuppressWarnings("unused")
+	public void setFlingTimeConstant(final float timeConstant)
+	{
+		this.flingTimeConstant = timeConstant;
+	}
+
+	/**
+	 * Feed velocity tracker, release it when gesture ends. Velocity is computed before the tracker is cleared.
+	 *
+	 * @param event touch event
+	 */
+	private void trackVelocity(@NonNull final MotionEvent event)
+	{
+		final int action = event.getActionMasked();
+		if (action == MotionEvent.ACTION_DOWN)
+		{
+			if (this.velocityTracker == null)
+			{
+				this.velocityTracker = VelocityTracker.obtain();
+			}
+			else
+			{
+				this.velocityTracker.clear();
+			}
+		}
+		if (this.velocityTracker != null)
+		{
+			this.velocityTracker.addMovement(event);
+			if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+			{
+				this.velocityTracker.computeCurrentVelocity(1000, this.maxFlingVelocity);
+				this.flingVelocityX = this.velocityTracker.getXVelocity();
+				this.flingVelocityY = this.velocityTracker.getYVelocity();
+				this.velocityTracker.recycle();
+				this.velocityTracker = null;
+			}
+		}
+	}
+
+	/**
+	 * Start fling from release position with release velocity
+	 *
+	 * @param x release x
+	 * @param y release y
+	 * @return whether fling has started, in which case up is fired when it ends
+	 */
+	private boolean startFling(final float x, final float y)
+	{
+		if (!this.flingEnabled || this.isScaling || Math.hypot(this.flingVelocityX, this.flingVelocityY) < this.minFlingVelocity)
+		{
+			return false;
+		}
+		this.flinging = true;
+		this.flingX = x;
+		this.flingY = y;
+		this.flingTime = System.nanoTime();
+		this.flingScheduler.request();
+		if (LOG)
+		{
+			Log.d(TAG, "fling " + this.flingVelocityX + ',' + this.flingVelocityY);
+		}
+		return true;
+	}
+
+	/**
+	 * Fling frame is due: advance position with decayed velocity and drag to it
+	 *
+	 * @param frameTimeNanos frame time
+	 */
+	private void onFlingFrame(final long frameTimeNanos)
+	{
+		if (!this.flinging)
+		{
+			return;
+		}
+		final float dt = Math.max(0L, frameTimeNanos - this.flingTime) / 1e9F;
+		this.flingTime = frameTimeNanos;
+
+		// exact integral of exponentially decaying velocity over dt
+		final float decay = (float) Math.exp(-dt / this.flingTimeConstant);
+		final float distance = this.flingTimeConstant * (1F - decay);
+		this.flingX += this.flingVelocityX * distance;
+		this.flingY += this.flingVelocityY * distance;
+		this.flingVelocityX *= decay;
+		this.flingVelocityY *= decay;
+
+		if (this.listener == null)
+		{
+			this.flinging = false;
+			return;
+		}
+		this.listener.onDragged((int) this.flingX, (int) this.flingY);
+		if (Math.hypot(this.flingVelocityX, this.flingVelocityY) < this.minFlingVelocity)
+		{
+			// fling is over
+			this.flinging = false;
+			this.listener.onUp((int) this.flingX, (int) this.flingY);
+			return;
+		}
+		this.flingScheduler.request();
+	}
+
+	/**
+	 * Stop fling where it is, ending the gesture it continues
+	 */
+	private void cancelFling()
+	{
+		this.flingScheduler.cancel();
+		if (this.flinging)
+		{
+			this.flinging = false;
+			if (this.listener != null)
+			{
+				this.listener.onUp((int) this.flingX, (int) this.flingY);
+			}
+		}
+	}
+
+	// S C A L E
+
+	/**
+	 * Set scale gesture mode
+	 *
+	 * @param mode scale gesture mode
+	 */
+	@SuppressWarnings("unused")
+	public void setScaleMode(@NonNull final ScaleMode mode)
+	{
+		this.scaleMode = mode;
+	}
+
+	/**
+	 * Scale frame is due: fire scale change (LIVE) or show scaled last frame (PREVIEW)
+	 *
+	 * @param frameTimeNanos frame time
+	 */
+	private void onScaleFrame(@SuppressWarnings("unused") final long frameTimeNanos)
+	{
+		if (!this.isScaling)
+		{
+			return;
+		}
+		switch (this.scaleMode)
+		{
+			case LIVE:
+			{
+				final float delta = this.scaleFactor / this.firedScaleFactor;
+				if (delta != 1F)
+				{
+					this.firedScaleFactor = this.scaleFactor;
+					fireScale(delta);
+				}
+				break;
+			}
+			case PREVIEW:
+			{
+				if (this.thread != null)
+				{
+					this.thread.setPreviewScale(this.scaleFactor, this.scaleFocusX, this.scaleFocusY);
+					recomposite();
+				}
+				break;
+			}
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Fire zoom or scale event, depending on pointer layout
+	 *
+	 * @param factor scale factor relative to last fired one
+	 */
+	private void fireScale(final float factor)
+	{
+		// zoom or scale
+		final XScaleGestureDetector xdetector = (XScaleGestureDetector) this.scaleDetector;
+		final int left = xdetector.leftmost();
+		final int right = xdetector.rightmost();
+		boolean zoom = left != -1 && /* right != -1 && */ xdetector.getPointerY(left) < xdetector.getPointerY(right);
+
+		// fire event
+		final float scale = -factor;
+		assert this.listener != null;
+		if (zoom)
+		{
+			this.listener.onZoom(scale, 0, 0);
+			if (LOG)
+			{
+				Log.d(TAG, "zoom: " + scale);
+			}
+		}
+		else
+		{
+			this.listener.onScale(0, scale, scale);
+			if (LOG)
+			{
+				Log.d(TAG, "scale: " + scale);
+			}
+		}
+	}
+
 	@SuppressWarnings("WeakerAccess")
 	@Override
 	public void addEventListener(final EventListener listener0)
@@ -568,6 +1754,11 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	public void setFireHover(final boolean flag)
 	{
 		this.fireHover = flag;
+		if (!flag)
+		{
+			this.hoverScheduler.cancel();
+			this.hoverPending = false;
+		}
 	}
 
 	@Override
@@ -575,12 +1766,90 @@ public abstract class Surface extends SurfaceView implements SurfaceHolder.Callb
 	{
 		if (this.fireHover)
 		{
-			assert this.listener != null;
-			this.listener.onHover((int) event.getX(), (int) event.getY());
+			if (event.getActionMasked() == MotionEvent.ACTION_HOVER_EXIT)
+			{
+				// next hover dispatches wherever it is
+				this.hoverDispatchedX = Float.NaN;
+				this.hoverDispatchedY = Float.NaN;
+			}
+
+			// keep latest position, dispatch on next frame
+			if (this.hoverPending)
+			{
+				this.hoverSuppressed++;
+			}
+			this.hoverX = event.getX();
+			this.hoverY = event.getY();
+			this.hoverPending = true;
+			this.hoverScheduler.request();
 		}
 		return super.onHoverEvent(event);
 	}
 
+	/**
+	 * Hover frame is due: dispatch latest hover position unless it is within finder epsilon of the last dispatched one
+	 *
+	 * @param frameTimeNanos frame time
+	 */
+	private void onHoverFrame(@SuppressWarnings("unused") final long frameTimeNanos)
+	{
+		if (!this.hoverPending)
+		{
+			return;
+		}
+		this.hoverPending = false;
+		if (this.listener == null)
+		{
+			return;
+		}
+
+		// NaN (none dispatched yet) compares false
+		final float epsilon = getFinderDistanceEpsilonFactor() * Graphics.density;
+		final float dx = this.hoverX - this.hoverDispatchedX;
+		final float dy = this.hoverY - this.hoverDispatchedY;
+		if (dx * dx + dy * dy <= epsilon * epsilon)
+		{
+			this.hoverSuppressed++;
+			return;
+		}
+		this.hoverDispatchedX = this.hoverX;
+		this.hoverDispatchedY = this.hoverY;
+		this.hoverDispatched++;
+		this.listener.onHover((int) this.hoverX, (int) this.hoverY);
+	}
+
+	/**
+	 * Get dispatched hover event count
+	 *
+	 * @return number of hover events dispatched to listener
+	 */
+	@SuppressWarnings("unused")
+	public long getHoverDispatchedCount()
+	{
+		return this.hoverDispatched;
+	}
+
+	/**
+	 * Get suppressed hover event count
+	 *
+	 * @return number of hover events coalesced or within finder epsilon of last dispatch
+	 */
+	@SuppressWarnings("unused")
+	public long getHoverSuppressedCount()
+	{
+		return this.hoverSuppressed;
+	}
+
+	/**
+	 * Reset hover event counts
+	 */
+	@SuppressWarnings("unused")
+	public void resetHoverCounts()
+	{
+		this.hoverDispatched = 0;
+		this.hoverSuppressed = 0;
+	}
+
 	// F I N D I N G   P R E C I S I O N
 
 	@Override
@@ -5,12 +5,23 @@
 package treebolic.glue.component;
 
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.os.Build;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import treebolic.glue.BitmapLayer;
+import treebolic.glue.Color;
 import treebolic.glue.Graphics;
+import treebolic.glue.LabelCache;
+import treebolic.glue.LevelOfDetail;
 
 /**
  * Treebolic thread
@@ -25,6 +36,30 @@ public class TreebolicThread extends Thread
 	 */
 	static private int drawCycle = 0;
 
+	/**
+	 * Dirty area ratio (to surface area) above which the whole surface is redrawn
+	 */
+	static public final float FULL_REDRAW_RATIO = 0.5F;
+
+	/**
+	 * Rendering backend
+	 */
+	public enum Backend
+	{
+		/**
+		 * Software canvas (lockCanvas)
+		 */
+		SOFTWARE,
+		/**
+		 * Hardware-accelerated canvas (lockHardwareCanvas, API 26+)
+		 */
+		HARDWARE,
+		/**
+		 * Hardware if available, software otherwise
+		 */
+		AUTO
+	}
+
 	// M E M B E R S
 
 	/**
@@ -61,6 +96,148 @@ public class TreebolicThread extends Thread
 	 */
 	private volatile boolean pauseFlag = true;
 
+	/**
+	 * Requested rendering backend
+	 */
+	@NonNull
+	private volatile Backend backend = Backend.SOFTWARE;
+
+	/**
+	 * Rendering backend in use (never AUTO)
+	 */
+	@NonNull
+	private volatile Backend activeBackend = Backend.SOFTWARE;
+
+	/**
+	 * Graphics context, created on first frame and rebound to each frame's canvas
+	 */
+	@Nullable
+	private Graphics graphics;
+
+	/**
+	 * Label cache, null if labels are drawn as text
+	 */
+	@Nullable
+	private volatile LabelCache labelCache;
+
+	/**
+	 * Level of detail for small labels and images
+	 */
+	@NonNull
+	private volatile LevelOfDetail levelOfDetail = LevelOfDetail.FULL;
+
+	/**
+	 * Text size (pixels) below which labels are subject to level of detail
+	 */
+	private volatile float lodTextThreshold = Graphics.DEFAULT_LOD_TEXT_THRESHOLD;
+
+	/**
+	 * Image size (pixels) below which images are subject to level of detail
+	 */
+	private volatile int lodImageThreshold = Graphics.DEFAULT_LOD_IMAGE_THRESHOLD;
+
+	/**
+	 * Whether primitives outside the visible surface are culled
+	 */
+	private volatile boolean culling = false;
+
+	/**
+	 * Number of primitives culled in last frame
+	 */
+	private volatile int frameCulled;
+
+	/**
+	 * Number of primitives tested and drawn in last frame
+	 */
+	private volatile int frameDrawn;
+
+	/**
+	 * Frame metrics, null if not collected
+	 */
+	@Nullable
+	private volatile FrameMetrics metrics;
+
+	/**
+	 * Dirty region accumulated since last draw cycle (also serves as lock)
+	 */
+	@NonNull
+	private final Rect dirty = new Rect();
+
+	/**
+	 * Whether the whole surface is dirty
+	 */
+	private boolean dirtyAll = true;
+
+	/**
+	 * Dirty region locked by current draw cycle
+	 */
+	@NonNull
+	private final Rect frameDirty = new Rect();
+
+	/**
+	 * Preview scale applied to frames, 1 if none
+	 */
+	private volatile float previewScale = 1F;
+
+	/**
+	 * Preview scale focus
+	 */
+	private volatile float previewFocusX;
+
+	private volatile float previewFocusY;
+
+	/**
+	 * Whether frames preview a scale gesture by scaling a snapshot of the scene
+	 */
+	private volatile boolean previewing = false;
+
+	/**
+	 * Snapshot of the scene as it was when preview began, render thread only
+	 */
+	@NonNull
+	private final BitmapLayer previewLayer = new BitmapLayer();
+
+	/**
+	 * Paint for scaled snapshot
+	 */
+	@NonNull
+	private final Paint previewPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * Background color of last painted scene, null if none
+	 */
+	@Nullable
+	private volatile Integer sceneBackground;
+
+	/**
+	 * Whether scene is recorded to pictures by a worker while this thread composites the last completed one
+	 */
+	private volatile boolean asyncRecording = false;
+
+	/**
+	 * Whether scene needs recording (async recording)
+	 */
+	@NonNull
+	private final AtomicBoolean sceneDirty = new AtomicBoolean(true);
+
+	/**
+	 * Last completed picture (async recording)
+	 */
+	@NonNull
+	private final AtomicReference<Picture> frontPicture = new AtomicReference<>();
+
+	/**
+	 * Picture being composited, null if none (async recording): the recorder never records to it
+	 */
+	@NonNull
+	private final AtomicReference<Picture> compositedPicture = new AtomicReference<>();
+
+	/**
+	 * Recorder worker, created on first async frame
+	 */
+	@Nullable
+	private Recorder recorder;
+
 	/**
 	 * Constructor
 	 *
@@ -144,27 +321,637 @@ public class TreebolicThread extends Thread
 		}
 	}
 
+	// B A C K E N D
+
+	/**
+	 * Whether hardware canvas is supported
+	 *
+	 * @return true if hardware canvas is supported
+	 */
+	static public boolean isHardwareCanvasSupported()
+	{
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+	}
+
+	/**
+	 * Set requested rendering backend. A surface cannot switch backends once it has been drawn to, so this takes effect when the thread starts.
+	 *
+	 * @param backend0 requested rendering backend
+	 */
+	public void setBackend(@NonNull final Backend backend0)
+	{
+		this.backend = backend0;
+	}
+
+	/**
+	 * Get requested rendering backend
+	 *
+	 * @return requested rendering backend
+	 */
+	@NonNull
+	public Backend getBackend()
+	{
+		return this.backend;
+	}
+
+	/**
+	 * Get rendering backend in use
+	 *
+	 * @return rendering backend in use, SOFTWARE or HARDWARE
+	 */
+	@NonNull
+	public Backend getActiveBackend()
+	{
+		return this.activeBackend;
+	}
+
+	/**
+	 * Resolve requested backend to the backend to be used
+	 *
+	 * @param backend0 requested backend
+	 * @return SOFTWARE or HARDWARE
+	 */
+	@NonNull
+	static private Backend resolveBackend(@NonNull final Backend backend0)
+	{
+		if (backend0 == Backend.SOFTWARE)
+		{
+			return Backend.SOFTWARE;
+		}
+		if (isHardwareCanvasSupported())
+		{
+			return Backend.HARDWARE;
+		}
+		if (backend0 == Backend.HARDWARE)
+		{
+			Log.w(TAG, "Hardware canvas not supported below API 26, falling back to software");
+		}
+		return Backend.SOFTWARE;
+	}
+
+	/**
+	 * Lock canvas with active backend
+	 *
+	 * @param region dirty region or null (software only, hardware canvases always cover the whole surface)
+	 * @return canvas, null if surface cannot be locked
+	 */
+	@Nullable
+	private Canvas lockCanvas(@Nullable final Rect region)
+	{
+		assert this.surfaceHolder != null;
+		if (this.activeBackend == Backend.HARDWARE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+		{
+			// holder reports failure by returning null, not by throwing
+			final Canvas canvas = this.surfaceHolder.lockHardwareCanvas();
+			if (canvas != null)
+			{
+				return canvas;
+			}
+			final Canvas softwareCanvas = this.surfaceHolder.lockCanvas(region);
+			if (softwareCanvas != null)
+			{
+				// surface is valid but does not support hardware rendering
+				Log.w(TAG, "Hardware canvas unavailable, falling back to software");
+				this.activeBackend = Backend.SOFTWARE;
+			}
+			return softwareCanvas;
+		}
+		return this.surfaceHolder.lockCanvas(region);
+	}
+
+	// L A B E L S
+
+	/**
+	 * Set label cache
+	 *
+	 * @param labelCache0 label cache, null to draw labels as text
+	 */
+	public void setLabelCache(@Nullable final LabelCache labelCache0)
+	{
+		this.labelCache = labelCache0;
+	}
+
+	// L E V E L   O F   D E T A I L
+
+	/**
+	 * Set level of detail for labels and images below size thresholds
+	 *
+	 * @param levelOfDetail0 level of detail
+	 * @param textThreshold  text size (pixels) below which labels are subject to level of detail
+	 * @param imageThreshold image size (pixels) below which images are subject to level of detail
+	 */
+	public void setLevelOfDetail(@NonNull final LevelOfDetail levelOfDetail0, final float textThreshold, final int imageThreshold)
+	{
+		this.lodTextThreshold = textThreshold;
+		this.lodImageThreshold = imageThreshold;
+		this.levelOfDetail = levelOfDetail0;
+	}
+
+	// C U L L I N G
+
+	/**
+	 * Set whether primitives outside the visible surface are culled
+	 *
+	 * @param flag whether to cull
+	 */
+	public void setCulling(final boolean flag)
+	{
+		this.culling = flag;
+	}
+
+	/**
+	 * Get number of primitives culled in last frame
+	 *
+	 * @return number of primitives culled in last frame
+	 */
+	public int getFrameCulled()
+	{
+		return this.frameCulled;
+	}
+
+	/**
+	 * Get number of primitives tested and drawn in last frame
+	 *
+	 * @return number of primitives drawn in last frame
+	 */
+	public int getFrameDrawn()
+	{
+		return this.frameDrawn;
+	}
+
+	// M E T R I C S
+
+	/**
+	 * Set frame metrics collector
+	 *
+	 * @param metrics0 frame metrics collector, null to disable collection
+	 */
+	public void setMetrics(@Nullable final FrameMetrics metrics0)
+	{
+		this.metrics = metrics0;
+	}
+
+	// A S Y N C   R E C O R D I N G
+
+	/**
+	 * Set whether scene is recorded by a worker thread while this thread composites the last completed recording
+	 *
+	 * @param flag whether to record asynchronously
+	 */
+	public void setAsyncRecording(final boolean flag)
+	{
+		this.asyncRecording = flag;
+		invalidate();
+		// switch now: render loop starts or quits recorder
+		unpause();
+	}
+
+	/**
+	 * Recorder worker: records scene to back picture, then swaps it with front picture and wakes up render thread.
+	 * Pictures are triple-buffered so that the back picture is never the one being composited.
+	 */
+	private final class Recorder extends Thread
+	{
+		/**
+		 * Request lock
+		 */
+		private final Object requestLock = new Object();
+
+		/**
+		 * Whether recording is requested (guarded by request lock)
+		 */
+		private boolean requested = false;
+
+		/**
+		 * Whether worker should exit (guarded by request lock)
+		 */
+		private boolean quit = false;
+
+		/**
+		 * Pictures, recorded to in turn
+		 */
+		@NonNull
+		private final Picture[] pictures = {new Picture(), new Picture(), new Picture()};
+
+		/**
+		 * Graphics context, rebound to each recording canvas
+		 */
+		@Nullable
+		private Graphics recordGraphics;
+
+		Recorder()
+		{
+			super("TreebolicRecorder");
+			setDaemon(true);
+		}
+
+		/**
+		 * Request recording, requests made while recording coalesce into one
+		 */
+		void request()
+		{
+			synchronized (this.requestLock)
+			{
+				this.requested = true;
+				this.requestLock.notify();
+			}
+		}
+
+		/**
+		 * Tell worker to exit and wait for it to finish
+		 */
+		void quit()
+		{
+			synchronized (this.requestLock)
+			{
+				this.quit = true;
+				this.requestLock.notify();
+			}
+			boolean retry = true;
+			while (retry)
+			{
+				try
+				{
+					join();
+					retry = false;
+				}
+				catch (@NonNull final InterruptedException ignored)
+				{
+					// do nothing
+				}
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			while (true)
+			{
+				synchronized (this.requestLock)
+				{
+					try
+					{
+						while (!this.requested && !this.quit)
+						{
+							this.requestLock.wait();
+						}
+					}
+					catch (@NonNull final InterruptedException ignored)
+					{
+						Log.d(TAG, "recorder interrupted");
+					}
+					if (this.quit)
+					{
+						break;
+					}
+					this.requested = false;
+				}
+				if (record())
+				{
+					// composite new picture
+					unpause();
+				}
+			}
+			this.recordGraphics = null;
+		}
+
+		/**
+		 * Record scene to back picture and swap it to front
+		 *
+		 * @return true if a picture has been recorded
+		 */
+		private boolean record()
+		{
+			final Surface surface0 = TreebolicThread.this.surface;
+			final SurfaceHolder surfaceHolder0 = TreebolicThread.this.surfaceHolder;
+			if (surface0 == null || surfaceHolder0 == null)
+			{
+				return false;
+			}
+			final Rect frame = surfaceHolder0.getSurfaceFrame();
+			if (frame.isEmpty())
+			{
+				return false;
+			}
+
+			// neither front nor composited
+			final Picture picture = nextBack();
+			synchronized (picture)
+			{
+				final Canvas canvas = picture.beginRecording(frame.width(), frame.height());
+				try
+				{
+					synchronized (TreebolicThread.this.synchronizer)
+					{
+						if (this.recordGraphics == null)
+						{
+							this.recordGraphics = new Graphics(canvas);
+							this.recordGraphics.setRecorded(true);
+						}
+						else
+						{
+							this.recordGraphics.bind(canvas).reset();
+						}
+						paint(surface0, this.recordGraphics);
+					}
+				}
+				finally
+				{
+					picture.endRecording();
+				}
+			}
+
+			// swap
+			TreebolicThread.this.frontPicture.set(picture);
+			return true;
+		}
+
+		/**
+		 * Pick picture to record to
+		 *
+		 * @return picture that is neither front picture nor being composited
+		 */
+		@NonNull
+		private Picture nextBack()
+		{
+			final Picture front = TreebolicThread.this.frontPicture.get();
+			final Picture composited = TreebolicThread.this.compositedPicture.get();
+			for (final Picture picture : this.pictures)
+			{
+				if (picture != front && picture != composited)
+				{
+					return picture;
+				}
+			}
+			throw new IllegalStateException("no back picture");
+		}
+	}
+
+	/**
+	 * Acquire front picture for compositing, so that recorder does not record to it until it is released
+	 *
+	 * @return front picture, null if none
+	 */
+	@Nullable
+	private Picture acquireFront()
+	{
+		Picture picture;
+		do
+		{
+			picture = this.frontPicture.get();
+			this.compositedPicture.set(picture);
+		}
+		// front swapped in the meantime: recorder may have missed the mark
+		while (this.frontPicture.get() != picture);
+		return picture;
+	}
+
+	/**
+	 * Stop recorder, if any, and drop its pictures
+	 */
+	private void stopRecorder()
+	{
+		if (this.recorder != null)
+		{
+			this.recorder.quit();
+			this.recorder = null;
+		}
+		this.frontPicture.set(null);
+	}
+
+	// P R E V I E W
+
+	/**
+	 * Begin preview of a scale gesture: the scene is snapshot at next frame, subsequent frames only scale the snapshot
+	 */
+	public void beginPreview()
+	{
+		this.previewScale = 1F;
+		this.previewLayer.invalidate();
+		this.previewing = true;
+	}
+
+	/**
+	 * End preview of a scale gesture: frames paint the scene again
+	 */
+	public void endPreview()
+	{
+		this.previewing = false;
+		this.previewScale = 1F;
+	}
+
+	/**
+	 * Set scale applied to snapshot while previewing a scale gesture
+	 *
+	 * @param scale  scale, 1 to end preview
+	 * @param focusX scale focus x
+	 * @param focusY scale focus y
+	 */
+	public void setPreviewScale(final float scale, final float focusX, final float focusY)
+	{
+		this.previewFocusX = focusX;
+		this.previewFocusY = focusY;
+		this.previewScale = scale;
+	}
+
+	/**
+	 * Draw preview: scene snapshot, taken once per gesture, scaled
+	 *
+	 * @param canvas  canvas
+	 * @param picture last completed picture if recording is async, null if scene is painted
+	 */
+	private void doPreview(@NonNull final Canvas canvas, @Nullable final Picture picture)
+	{
+		// snapshot
+		if (!this.previewLayer.isValid())
+		{
+			if (!this.previewLayer.ensure(canvas.getWidth(), canvas.getHeight()))
+			{
+				return;
+			}
+			final Canvas snapshotCanvas = this.previewLayer.beginRender();
+			if (picture != null)
+			{
+				synchronized (picture)
+				{
+					snapshotCanvas.drawPicture(picture);
+				}
+			}
+			else
+			{
+				// engine transforms must not carry into next snapshot
+				snapshotCanvas.save();
+				if (this.graphics == null)
+				{
+					this.graphics = new Graphics(snapshotCanvas);
+				}
+				else
+				{
+					this.graphics.bind(snapshotCanvas).reset();
+				}
+				assert this.surface != null;
+				paint(this.surface, this.graphics);
+				snapshotCanvas.restore();
+			}
+			this.previewLayer.endRender();
+		}
+
+		// uncovered area when scaled down
+		final Integer background = this.sceneBackground;
+		canvas.drawColor(background != null ? Color.makeOpaque(background) : android.graphics.Color.BLACK);
+
+		// scaled snapshot
+		final float scale = this.previewScale;
+		canvas.save();
+		canvas.scale(scale, scale, this.previewFocusX, this.previewFocusY);
+		this.previewLayer.draw(canvas, this.previewPaint);
+		canvas.restore();
+	}
+
+	// D I R T Y
+
+	/**
+	 * Mark whole surface as dirty
+	 */
+	public void invalidate()
+	{
+		synchronized (this.dirty)
+		{
+			this.dirtyAll = true;
+		}
+		this.sceneDirty.set(true);
+	}
+
+	/**
+	 * Add region to dirty region
+	 *
+	 * @param rect dirty rectangle
+	 */
+	public void invalidate(@NonNull final Rect rect)
+	{
+		synchronized (this.dirty)
+		{
+			if (!this.dirtyAll)
+			{
+				this.dirty.union(rect);
+			}
+		}
+		this.sceneDirty.set(true);
+	}
+
+	/**
+	 * Take dirty region for this draw cycle and reset accumulated region
+	 *
+	 * @return region to redraw, null if whole surface
+	 */
+	@Nullable
+	private Rect takeDirty()
+	{
+		synchronized (this.dirty)
+		{
+			// an empty region here means we have been woken up without region, so redraw all
+			boolean all = this.dirtyAll || this.dirty.isEmpty();
+			if (!all)
+			{
+				assert this.surfaceHolder != null;
+				final Rect frame = this.surfaceHolder.getSurfaceFrame();
+				final long frameArea = (long) frame.width() * frame.height();
+				final long dirtyArea = (long) this.dirty.width() * this.dirty.height();
+				all = dirtyArea >= FULL_REDRAW_RATIO * frameArea;
+				this.frameDirty.set(this.dirty);
+			}
+			this.dirty.setEmpty();
+			this.dirtyAll = false;
+			return all ? null : this.frameDirty;
+		}
+	}
+
 	@Override
 	public void run()
 	{
+		this.activeBackend = resolveBackend(this.backend);
+		if (LOG)
+		{
+			Log.d(TAG, "backend " + this.activeBackend + " (requested " + this.backend + ")");
+		}
+
+		long idleStart = System.nanoTime();
 		while (!this.terminateFlag)
 		{
+			// metrics
+			final FrameMetrics metrics0 = this.metrics;
+			long lockStart = 0;
+			long paintStart = 0;
+			long postStart = 0;
+
+			// async recording: have scene recorded by worker, composite last completed picture
+			final boolean async = this.asyncRecording;
+			if (async)
+			{
+				if (this.recorder == null)
+				{
+					this.recorder = new Recorder();
+					this.recorder.start();
+				}
+				// previewing scales snapshot: scene is recorded again once preview ends
+				if (!this.previewing && this.sceneDirty.getAndSet(false))
+				{
+					this.recorder.request();
+				}
+			}
+			else if (this.recorder != null)
+			{
+				// async recording turned off
+				stopRecorder();
+			}
+
 			// draw cycle
 			@Nullable Canvas canvas = null;
 			try
 			{
 				assert this.surfaceHolder != null;
-				canvas = this.surfaceHolder.lockCanvas(null);
-				synchronized (this.synchronizer)
+				final Rect dirtyRegion = takeDirty();
+				// pictures cover the whole surface
+				final Rect region = this.activeBackend == Backend.HARDWARE || async ? null : dirtyRegion;
+				if (metrics0 != null)
 				{
-					if (LOG)
+					lockStart = System.nanoTime();
+				}
+				// async recording with nothing recorded yet: keep current surface content
+				if (!async || this.frontPicture.get() != null)
+				{
+					canvas = lockCanvas(region);
+					if (metrics0 != null)
+					{
+						paintStart = System.nanoTime();
+					}
+					// picked once canvas is locked, so that it is as recent as possible
+					final Picture picture = async ? acquireFront() : null;
+					if (picture != null)
 					{
-						Log.d(TAG, "task started " + ++TreebolicThread.drawCycle);
+						try
+						{
+							doComposite(canvas, picture);
+						}
+						finally
+						{
+							this.compositedPicture.set(null);
+						}
 					}
-					doDraw(canvas);
-					if (LOG)
+					else
 					{
-						Log.d(TAG, "task done " + TreebolicThread.drawCycle);
+						synchronized (this.synchronizer)
+						{
+							if (LOG)
+							{
+								Log.d(TAG, "task started " + ++TreebolicThread.drawCycle + (region == null ? " full" : " dirty " + region));
+							}
+							doDraw(canvas, region);
+							if (LOG)
+							{
+								Log.d(TAG, "task done " + TreebolicThread.drawCycle);
+							}
+						}
 					}
 				}
 			}
@@ -173,10 +960,26 @@ public class TreebolicThread extends Thread
 				// do this in a finally so that if an exception is thrown during the above, we don't leave the Surface in an inconsistent state
 				if (canvas != null)
 				{
+					if (metrics0 != null)
+					{
+						postStart = System.nanoTime();
+					}
 					this.surfaceHolder.unlockCanvasAndPost(canvas);
 				}
 			}
 
+			// record frame
+			if (metrics0 != null && canvas != null)
+			{
+				final long postEnd = System.nanoTime();
+				metrics0.record(paintStart - lockStart, postStart - paintStart, postEnd - postStart, lockStart - idleStart, this.activeBackend);
+				idleStart = postEnd;
+			}
+			else
+			{
+				idleStart = System.nanoTime();
+			}
+
 			// pause
 			// we do not pause if we have been signaled in the meantime
 			if (LOG)
@@ -210,9 +1013,14 @@ public class TreebolicThread extends Thread
 			this.pauseFlag = true;
 		}
 
+		// exiting thread : stop recorder before it loses surface
+		stopRecorder();
+		this.previewLayer.release();
+
 		// exiting thread : release references to surface
 		this.surface = null;
 		this.surfaceHolder = null;
+		this.graphics = null;
 
 		if (LOG)
 		{
@@ -222,13 +1030,27 @@ public class TreebolicThread extends Thread
 
 	/**
 	 * Draws to the provided Canvas.
+	 *
+	 * @param canvas canvas
+	 * @param region region to redraw (as adjusted by lockCanvas), null if whole surface
 	 */
-	private void doDraw(@Nullable final Canvas canvas)
+	private void doDraw(@Nullable final Canvas canvas, @Nullable final Rect region)
 	{
 		// Draw the background image. Operations on the Canvas accumulate so this is like clearing the screen.
 		if (canvas != null)
 		{
 			canvas.save();
+			if (region != null)
+			{
+				// pixels outside the dirty region are preserved from the previous frame
+				canvas.clipRect(region);
+			}
+			if (this.previewing)
+			{
+				doPreview(canvas, null);
+				canvas.restore();
+				return;
+			}
 
 			// Paint paint = new Paint();
 			// paint.setColor(Color.LIGHT_GRAY);
@@ -236,11 +1058,60 @@ public class TreebolicThread extends Thread
 			// int h = canvas.getHeight() / 2;
 			// canvas.drawCircle(w, h, Math.min(w, h), paint);
 
-			@NonNull final Graphics g = new Graphics(canvas);
+			if (this.graphics == null)
+			{
+				this.graphics = new Graphics(canvas);
+			}
+			else
+			{
+				this.graphics.bind(canvas).reset();
+			}
 			assert this.surface != null;
-			this.surface.paint(g);
+			paint(this.surface, this.graphics);
 
 			canvas.restore();
 		}
 	}
+
+	/**
+	 * Paint surface with graphics context
+	 *
+	 * @param surface0 surface
+	 * @param g        graphics context, bound to canvas
+	 */
+	private void paint(@NonNull final Surface surface0, @NonNull final Graphics g)
+	{
+		g.setLabelCache(this.labelCache);
+		g.setCulling(this.culling);
+		g.setLevelOfDetail(this.levelOfDetail);
+		g.setLevelOfDetailThresholds(this.lodTextThreshold, this.lodImageThreshold);
+		surface0.paint(g);
+		g.flush();
+		this.sceneBackground = g.getBackgroundColor();
+		this.frameCulled = g.getCulled();
+		this.frameDrawn = g.getDrawn();
+	}
+
+	/**
+	 * Composites the last completed recording to the provided Canvas.
+	 *
+	 * @param canvas  canvas
+	 * @param picture last completed picture
+	 */
+	private void doComposite(@Nullable final Canvas canvas, @NonNull final Picture picture)
+	{
+		if (canvas != null)
+		{
+			// picture is not recorded to while it is drawn
+			if (this.previewing)
+			{
+				doPreview(canvas, picture);
+				return;
+			}
+			synchronized (picture)
+			{
+				canvas.drawPicture(picture);
+			}
+		}
+	}
 }
\ No newline at end of file
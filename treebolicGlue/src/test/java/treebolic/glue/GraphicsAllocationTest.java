@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.management.ManagementFactory;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Graphics primitives must not allocate in steady state
+ *
+ * @author Bernard Bou
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class GraphicsAllocationTest
+{
+	static private final int WARMUP = 2000;
+
+	static private final int ITERATIONS = 1000;
+
+	static private final int[] X = {10, 50, 90, 130, 170};
+
+	static private final int[] Y = {10, 60, 20, 70, 30};
+
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private Graphics graphics;
+
+	private Image image;
+
+	@Before
+	public void setUp()
+	{
+		assumeTrue(this.threadBean.isThreadAllocatedMemorySupported());
+		this.threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		Graphics.init(RuntimeEnvironment.getApplication());
+		this.graphics = new Graphics(new Canvas(Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888)));
+		this.image = new Image(Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888));
+	}
+
+	@Test
+	public void batchedLinesAreAllocationFree()
+	{
+		this.graphics.setLineBatching(true);
+		assertAllocationFree(() -> {
+			for (int i = 1; i < X.length; i++)
+			{
+				this.graphics.drawLine(X[i - 1], Y[i - 1], X[i], Y[i]);
+			}
+			this.graphics.flush();
+		});
+	}
+
+	@Test
+	public void drawLineIsAllocationFree()
+	{
+		this.graphics.setLineBatching(false);
+		assertAllocationFree(() -> this.graphics.drawLine(X[0], Y[0], X[1], Y[1]));
+	}
+
+	@Test
+	public void drawPolylineIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.drawPolyline(X, Y, X.length));
+	}
+
+	@Test
+	public void drawPolygonIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.drawPolygon(X, Y, X.length));
+	}
+
+	@Test
+	public void fillPolygonIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.fillPolygon(X, Y, X.length));
+	}
+
+	@Test
+	public void drawArcIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.drawArc(10F, 10F, 100F, 80F, 30F, 120F));
+	}
+
+	@Test
+	public void fillRectangleIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.fillRectangle(10, 10, 100, 80));
+	}
+
+	@Test
+	public void roundRectanglesAreAllocationFree()
+	{
+		assertAllocationFree(() -> {
+			this.graphics.drawRoundRectangle(10, 10, 100, 80, 8, 8);
+			this.graphics.fillRoundRectangle(10, 10, 100, 80, 8, 8);
+		});
+	}
+
+	@Test
+	public void ovalsAreAllocationFree()
+	{
+		assertAllocationFree(() -> {
+			this.graphics.drawOval(10F, 10F, 100F, 80F);
+			this.graphics.fillOval(10F, 10F, 100F, 80F);
+		});
+	}
+
+	@Test
+	public void drawScaledImageIsAllocationFree()
+	{
+		assertAllocationFree(() -> this.graphics.drawImage(this.image, 10, 10, 64, 64));
+	}
+
+	/**
+	 * Assert primitive allocates nothing once warmed up
+	 *
+	 * @param primitive primitive
+	 */
+	private void assertAllocationFree(@NonNull final Runnable primitive)
+	{
+		for (int i = 0; i < WARMUP; i++)
+		{
+			primitive.run();
+		}
+		final long threadId = Thread.currentThread().getId();
+		final long before = this.threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			primitive.run();
+		}
+		final long allocated = this.threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		// any object is at least 16 bytes: less than a byte per call means none was allocated
+		assertEquals("bytes allocated per call", 0, allocated / ITERATIONS);
+	}
+}
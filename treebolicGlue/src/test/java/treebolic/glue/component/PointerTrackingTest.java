@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue.component;
+
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Pointer tracking of scale detector must not allocate and must forget lifted pointers
+ *
+ * @author Bernard Bou
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PointerTrackingTest
+{
+	static private final int WARMUP = 2000;
+
+	static private final int SESSIONS = 1000;
+
+	private Surface.XScaleGestureDetector detector;
+
+	@Before
+	public void setUp()
+	{
+		this.detector = new Surface.XScaleGestureDetector(RuntimeEnvironment.getApplication(), new ScaleGestureDetector.SimpleOnScaleGestureListener());
+		// quick scale has its own gesture detector, which copies events
+		this.detector.setQuickScaleEnabled(false);
+	}
+
+	@Test
+	public void multiTouchSessionIsAllocationFree()
+	{
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		// three fingers land, move, lift in turn
+		final MotionEvent[] session = { //
+				event(MotionEvent.ACTION_DOWN, 0, new int[]{0}, new float[]{100F}), //
+				event(MotionEvent.ACTION_POINTER_DOWN, 1, new int[]{0, 1}, new float[]{100F, 300F}), //
+				event(MotionEvent.ACTION_MOVE, 0, new int[]{0, 1}, new float[]{90F, 310F}), //
+				event(MotionEvent.ACTION_POINTER_DOWN, 2, new int[]{0, 1, 2}, new float[]{90F, 310F, 500F}), //
+				event(MotionEvent.ACTION_MOVE, 0, new int[]{0, 1, 2}, new float[]{80F, 320F, 510F}), //
+				event(MotionEvent.ACTION_POINTER_UP, 1, new int[]{0, 1, 2}, new float[]{80F, 320F, 510F}), //
+				event(MotionEvent.ACTION_MOVE, 0, new int[]{0, 2}, new float[]{70F, 520F}), //
+				event(MotionEvent.ACTION_POINTER_UP, 0, new int[]{0, 2}, new float[]{70F, 520F}), //
+				event(MotionEvent.ACTION_UP, 0, new int[]{2}, new float[]{520F}), //
+		};
+
+		for (int i = 0; i < WARMUP; i++)
+		{
+			play(session);
+		}
+		final long threadId = Thread.currentThread().getId();
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < SESSIONS; i++)
+		{
+			play(session);
+		}
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		// any object is at least 16 bytes: less than a byte per session means none was allocated
+		assertEquals("bytes allocated per session", 0, allocated / SESSIONS);
+	}
+
+	@Test
+	public void liftedPointersAreForgotten()
+	{
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_DOWN, 0, new int[]{0}, new float[]{100F}));
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_POINTER_DOWN, 1, new int[]{0, 1}, new float[]{100F, 300F}));
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_POINTER_DOWN, 2, new int[]{0, 1, 2}, new float[]{100F, 300F, 500F}));
+		assertEquals(y(500F), this.detector.getPointerY(this.detector.rightmost()), 0F);
+
+		// rightmost lifted
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_POINTER_UP, 2, new int[]{0, 1, 2}, new float[]{100F, 300F, 500F}));
+		assertEquals(y(300F), this.detector.getPointerY(this.detector.rightmost()), 0F);
+
+		// leftmost lifted
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_POINTER_UP, 0, new int[]{0, 1}, new float[]{100F, 300F}));
+		assertEquals(y(300F), this.detector.getPointerY(this.detector.leftmost()), 0F);
+
+		// last lifted
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_UP, 0, new int[]{1}, new float[]{300F}));
+		assertEquals(-1, this.detector.leftmost());
+		assertEquals(-1, this.detector.rightmost());
+	}
+
+	@Test
+	public void cancelForgetsAllPointers()
+	{
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_DOWN, 0, new int[]{0}, new float[]{100F}));
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_POINTER_DOWN, 1, new int[]{0, 1}, new float[]{100F, 300F}));
+		this.detector.onTouchEvent(event(MotionEvent.ACTION_CANCEL, 0, new int[]{0, 1}, new float[]{100F, 300F}));
+		assertEquals(-1, this.detector.leftmost());
+	}
+
+	/**
+	 * Feed events to detector
+	 *
+	 * @param events events
+	 */
+	private void play(@NonNull final MotionEvent[] events)
+	{
+		for (final MotionEvent event : events)
+		{
+			this.detector.onTouchEvent(event);
+		}
+	}
+
+	/**
+	 * Make touch event
+	 *
+	 * @param action       masked action
+	 * @param pointerIndex index of pointer the action applies to
+	 * @param ids          pointer ids
+	 * @param xs           pointer xs, ys derive from them
+	 * @return event
+	 */
+	@NonNull
+	static private MotionEvent event(final int action, final int pointerIndex, @NonNull final int[] ids, @NonNull final float[] xs)
+	{
+		final int count = ids.length;
+		final MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[count];
+		final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[count];
+		for (int i = 0; i < count; i++)
+		{
+			properties[i] = new MotionEvent.PointerProperties();
+			properties[i].id = ids[i];
+			properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+			coords[i] = new MotionEvent.PointerCoords();
+			coords[i].x = xs[i];
+			coords[i].y = y(xs[i]);
+			coords[i].pressure = 1F;
+			coords[i].size = 1F;
+		}
+		return MotionEvent.obtain(0L, 0L, action | pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT, count, properties, coords, 0, 0, 1F, 1F, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Pointer y, distinct for each x
+	 *
+	 * @param x x
+	 * @return y
+	 */
+	static private float y(final float x)
+	{
+		return x / 2F + 50F;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2019-2023. Bernard Bou
+ */
+
+package treebolic.glue.component;
+
+import android.os.Looper;
+import android.view.ScaleGestureDetector;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.time.Duration;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import treebolic.glue.EventListener;
+import treebolic.glue.Graphics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Scale gesture end must not leak threads
+ *
+ * @author Bernard Bou
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SurfaceScaleTest
+{
+	static private final int GESTURES = 5000;
+
+	/**
+	 * Allowance for threads started by the runtime, not by surface
+	 */
+	static private final int THREAD_SLACK = 2;
+
+	private Surface surface;
+
+	private ScaleGestureDetector detector;
+
+	private ScaleGestureDetector.OnScaleGestureListener scaleListener;
+
+	@Before
+	public void setUp()
+	{
+		final ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+		controller.get().setTheme(androidx.appcompat.R.style.Theme_AppCompat);
+		final AppCompatActivity activity = controller.setup().get();
+
+		this.surface = new Surface(activity)
+		{
+			@Override
+			public void paint(@NonNull final Graphics g)
+			{
+				//
+			}
+		};
+		this.surface.addEventListener(mock(EventListener.class));
+		this.detector = ReflectionHelpers.getField(this.surface, "scaleDetector");
+		this.scaleListener = ReflectionHelpers.getField(this.detector, "mListener");
+	}
+
+	@Test
+	public void scaleEndKeepsThreadCountFlat()
+	{
+		final int baseline = Thread.activeCount();
+		for (int i = 0; i < GESTURES; i++)
+		{
+			this.scaleListener.onScaleBegin(this.detector);
+			this.scaleListener.onScaleEnd(this.detector);
+		}
+		assertTrue("threads during cooldowns: " + Thread.activeCount() + " baseline " + baseline, Thread.activeCount() <= baseline + THREAD_SLACK);
+
+		// cooldowns elapse
+		shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(Surface.DEFAULT_SCALE_COOLDOWN));
+		assertTrue("threads after cooldowns: " + Thread.activeCount() + " baseline " + baseline, Thread.activeCount() <= baseline + THREAD_SLACK);
+	}
+
+	@Test
+	public void lastCooldownEndsScaling()
+	{
+		for (int i = 0; i < GESTURES; i++)
+		{
+			this.scaleListener.onScaleBegin(this.detector);
+			this.scaleListener.onScaleEnd(this.detector);
+		}
+		assertTrue(ReflectionHelpers.<Boolean>getField(this.surface, "isScaling"));
+
+		// superseded cooldowns were removed, the last one ends scaling
+		shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(Surface.DEFAULT_SCALE_COOLDOWN));
+		assertFalse(ReflectionHelpers.<Boolean>getField(this.surface, "isScaling"));
+	}
+}